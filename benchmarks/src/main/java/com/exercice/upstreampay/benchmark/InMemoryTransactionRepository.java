@@ -0,0 +1,179 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.management.TransactionMetrics;
+import com.exercice.upstreampay.repository.TransactionIndexes;
+import com.exercice.upstreampay.repository.TransactionRepository;
+import com.exercice.upstreampay.service.cache.TransactionCache;
+import com.exercice.upstreampay.service.coalesce.TransactionInsertCoalescer;
+import com.exercice.upstreampay.service.count.TransactionCounter;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.service.events.TransactionEventPublisher;
+import com.exercice.upstreampay.service.impl.TransactionServiceImpl;
+import com.exercice.upstreampay.service.limit.TransactionLimiters;
+import com.exercice.upstreampay.service.stats.TransactionStatsService;
+import com.exercice.upstreampay.storage.MongoTransactionStore;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.archive.TransactionArchive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory stand-in for the {@link TransactionRepository}, so that the service and the controller can be
+ * benchmarked without a database. Only the operations used by the service are implemented.
+ */
+class InMemoryTransactionRepository implements InvocationHandler {
+
+    private final ConcurrentSkipListMap<String, Transaction> documents = new ConcurrentSkipListMap<>();
+
+    TransactionRepository proxy() {
+        return (TransactionRepository) Proxy.newProxyInstance(
+                TransactionRepository.class.getClassLoader(),
+                new Class<?>[] { TransactionRepository.class },
+                this
+        );
+    }
+
+    TransactionStore store() {
+        return new MongoTransactionStore(proxy(), new TransactionIndexes(null));
+    }
+
+    static TransactionServiceImpl newTransactionService(TransactionStore transactionStore) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+        return new TransactionServiceImpl(
+                transactionStore,
+                applicationProperties,
+                new TransactionCache(applicationProperties),
+                new TransactionCounter(transactionStore, applicationProperties),
+                transactionMetrics,
+                new TransactionStatsService(null, null, applicationProperties) {
+                    @Override
+                    public void recordCreated(List<Transaction> transactions) {
+                    }
+
+                    @Override
+                    public void recordUpdated(Transaction previous, Transaction updated) {
+                    }
+                },
+                new TransactionEventPublisher(null, applicationProperties),
+                new TransactionInsertCoalescer(transactionStore, transactionMetrics, applicationProperties),
+                new TransactionLimiters(applicationProperties),
+                newTransactionArchive(applicationProperties)
+        );
+    }
+
+    private static TransactionArchive newTransactionArchive(ApplicationProperties applicationProperties) {
+        try {
+            return new TransactionArchive(applicationProperties);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "save":
+                return Mono.fromSupplier(() -> store((Transaction) args[0]));
+            case "insert":
+                return Flux.fromIterable((Iterable<Transaction>) args[0]).map(this::store);
+            case "findById":
+                if (args.length > 1) {
+                    return Mono.fromSupplier(() -> documents.get((String) args[0])).map(((TransactionFields) args[1])::project);
+                }
+                return Mono.fromSupplier(() -> documents.get((String) args[0]));
+            case "existsById":
+                return Mono.fromSupplier(() -> documents.containsKey((String) args[0]));
+            case "count":
+            case "estimatedCount":
+                return Mono.fromSupplier(() -> (long) documents.size());
+            case "findAllBy":
+                if (!((TransactionCriteria) args[0]).isEmpty()) {
+                    throw new UnsupportedOperationException("Filtered queries are not supported in memory");
+                }
+                return page(documents.values(), (Pageable) args[1]).map(((TransactionFields) args[2])::project);
+            case "findAllAfter":
+                Collection<Transaction> after = args[0] == null ? documents.values() : documents.tailMap((String) args[0], false).values();
+                return Flux.fromIterable(after).take((int) args[1]).map(((TransactionFields) args[2])::project);
+            case "updateIfTransitionAllowed":
+                return Mono.fromSupplier(() -> update((Transaction) args[0], (Collection<Status>) args[1]));
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryTransactionRepository";
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    private Transaction store(Transaction transaction) {
+        if (transaction.getVersion() == null) {
+            if (transaction.getId() == null) {
+                transaction.setId(new ObjectId().toHexString());
+            }
+            transaction.setVersion(0L);
+            transaction.setCreatedAt(Instant.now());
+            transaction.setUpdatedAt(transaction.getCreatedAt());
+        }
+        documents.put(transaction.getId(), transaction);
+        return transaction;
+    }
+
+    private Tuple2<Transaction, Transaction> update(Transaction transaction, Collection<Status> fromStatuses) {
+        AtomicReference<Tuple2<Transaction, Transaction>> updated = new AtomicReference<>();
+        documents.computeIfPresent(transaction.getId(), (id, saved) -> {
+            if (!fromStatuses.contains(saved.getStatus()) || !saved.getOrdersFingerprint().equals(transaction.getOrdersFingerprint())) {
+                return saved;
+            }
+            if (transaction.getVersion() != null && !transaction.getVersion().equals(saved.getVersion())) {
+                return saved;
+            }
+            Transaction next = Transactions.shallowCopy(transaction);
+            next.setCreatedAt(saved.getCreatedAt());
+            next.setUpdatedAt(Instant.now());
+            next.setVersion(saved.getVersion() == null ? 1L : saved.getVersion() + 1);
+            updated.set(Tuples.of(saved, next));
+            return next;
+        });
+        return updated.get();
+    }
+
+    private static Flux<Transaction> page(Collection<Transaction> values, Pageable pageable) {
+        List<Transaction> page = new ArrayList<>(pageable.getPageSize());
+        long skip = pageable.getOffset();
+        for (Transaction transaction : values) {
+            if (skip-- > 0) {
+                continue;
+            }
+            if (page.size() == pageable.getPageSize()) {
+                break;
+            }
+            page.add(transaction);
+        }
+        return Flux.fromIterable(page);
+    }
+}
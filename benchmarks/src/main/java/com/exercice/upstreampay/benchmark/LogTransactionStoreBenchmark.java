@@ -0,0 +1,87 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.storage.log.LogTransactionStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import reactor.util.function.Tuple2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The embedded log-structured store, on a temporary directory preloaded with 10 000 transactions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogTransactionStoreBenchmark {
+
+    private static final int PRELOADED = 10_000;
+
+    private Path directory;
+
+    private LogTransactionStore store;
+
+    private final List<String> ids = new ArrayList<>(PRELOADED);
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transaction-log");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getStorage().getLog().setDirectory(directory.toString());
+        store = new LogTransactionStore(applicationProperties);
+        List<Transaction> transactions = new ArrayList<>(PRELOADED);
+        for (int i = 0; i < PRELOADED; i++) {
+            transactions.add(Transactions.newTransaction(10));
+        }
+        store.insertAll(transactions).map(Transaction::getId).doOnNext(ids::add).blockLast();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Transaction findById() {
+        return store.findById(randomId()).block();
+    }
+
+    @Benchmark
+    public Transaction save() {
+        return store.save(Transactions.newTransaction(10)).block();
+    }
+
+    @Benchmark
+    public Tuple2<Transaction, Transaction> update() {
+        Transaction transaction = store.findById(randomId()).block();
+        transaction.setVersion(null);
+        return store.updateIfTransitionAllowed(transaction, List.of(Status.values())).block();
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,53 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.controller.utils.PaginationUtil;
+import com.exercice.upstreampay.entities.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationUtilBenchmark {
+
+    private static final String URI = "http://localhost:8082/api/transactions?page=42&size=20&sort=id,asc";
+
+    private Page<Transaction> page;
+
+    private String cursor;
+
+    @Setup
+    public void setUp() {
+        page = new PageImpl<>(Collections.nCopies(20, Transactions.newTransaction(1)), PageRequest.of(42, 20), 1_000_000);
+        cursor = PaginationUtil.encodeCursor("6348a8f1d2c1a47c9b0e1f23");
+    }
+
+    @Benchmark
+    public HttpHeaders offsetHeaders() {
+        return PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromUriString(URI), page);
+    }
+
+    @Benchmark
+    public HttpHeaders cursorHeaders() {
+        return PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromUriString(URI), cursor, 20, null);
+    }
+}
@@ -0,0 +1,130 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.controller.TransactionController;
+import com.exercice.upstreampay.controller.validator.TransactionValidator;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.management.TransactionMetrics;
+import com.exercice.upstreampay.service.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.reactive.config.DelegatingWebFluxConfiguration;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of the WebFlux handlers, from the HTTP request to the encoded response,
+ * against an in-memory repository. Requests are handled on the calling thread, without any network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionHandlerBenchmark {
+
+    @Param({ "1", "100" })
+    private int orderLines;
+
+    private AnnotationConfigApplicationContext context;
+
+    private HttpHandler httpHandler;
+
+    private byte[] newTransaction;
+
+    private String existingId;
+
+    @Setup
+    public void setUp() throws IOException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        TransactionService transactionService = InMemoryTransactionRepository.newTransactionService(new InMemoryTransactionRepository().store());
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        TransactionController controller = new TransactionController(
+                transactionService,
+                new TransactionValidator(),
+                applicationProperties,
+                new TransactionMetrics(new SimpleMeterRegistry()),
+                null,
+                null,
+                null,
+                objectMapper
+        );
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(TransactionController.class, () -> controller);
+        context.registerBean(WebFluxConfigurer.class, () -> new WebFluxConfigurer() {
+            @Override
+            public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+                configurer.addCustomResolver(new ReactivePageableHandlerMethodArgumentResolver());
+            }
+        });
+        context.register(DelegatingWebFluxConfiguration.class);
+        context.refresh();
+        httpHandler = WebHttpHandlerBuilder.applicationContext(context).build();
+
+        newTransaction = objectMapper.writeValueAsBytes(Transactions.newTransaction(orderLines));
+        for (int i = 0; i < 1_000; i++) {
+            existingId = transactionService.save(Transactions.newTransaction(orderLines)).block().getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String createTransaction() {
+        return exchange(
+                MockServerHttpRequest
+                        .post("/api/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(new String(newTransaction, StandardCharsets.UTF_8)),
+                HttpStatus.CREATED
+        );
+    }
+
+    @Benchmark
+    public String getTransaction() {
+        return exchange(MockServerHttpRequest.get("/api/transactions/{id}", existingId).build(), HttpStatus.OK);
+    }
+
+    @Benchmark
+    public String getPageOfTransactions() {
+        return exchange(MockServerHttpRequest.get("/api/transactions?page=10&size=20").build(), HttpStatus.OK);
+    }
+
+    private String exchange(MockServerHttpRequest request, HttpStatus expectedStatus) {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        httpHandler.handle(request, response).block();
+        if (response.getStatusCode() != expectedStatus) {
+            throw new IllegalStateException(request.getURI() + " answered " + response.getStatusCode());
+        }
+        return response.getBodyAsString().block();
+    }
+}
@@ -0,0 +1,55 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionJsonBenchmark {
+
+    @Param({ "1", "100", "1000", "10000" })
+    private int orderLines;
+
+    private ObjectMapper objectMapper;
+
+    private Transaction transaction;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        transaction = Transactions.newTransaction(orderLines);
+        transaction.setId("6348a8f1d2c1a47c9b0e1f23");
+        json = objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public Transaction deserialize() throws IOException {
+        return objectMapper.readValue(json, Transaction.class);
+    }
+}
@@ -0,0 +1,40 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.controller.validator.TransactionValidator;
+import com.exercice.upstreampay.entities.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionValidatorBenchmark {
+
+    private final TransactionValidator validator = new TransactionValidator();
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        transaction = Transactions.newTransaction(10);
+    }
+
+    @Benchmark
+    public Transaction validate() {
+        validator.validate(transaction);
+        return transaction;
+    }
+}
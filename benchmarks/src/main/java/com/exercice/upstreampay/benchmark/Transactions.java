@@ -0,0 +1,64 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+final class Transactions {
+
+    private Transactions() {
+    }
+
+    static Transaction newTransaction(int orderLines) {
+        List<OrderLine> orders = new ArrayList<>(orderLines);
+        double price = 0;
+        for (int i = 0; i < orderLines; i++) {
+            OrderLine orderLine = new OrderLine("product-" + i, 1 + i % 5, 1.5 + i % 100);
+            orders.add(orderLine);
+            price += orderLine.getQuantity() * orderLine.getPrice();
+        }
+        Transaction transaction = new Transaction();
+        transaction.setPrice(price);
+        transaction.setType(PaymentType.BANK_CARD);
+        transaction.setStatus(Status.NEW);
+        transaction.setOrders(orders);
+        return transaction;
+    }
+
+    static Transaction copy(Transaction transaction) {
+        List<OrderLine> orders = new ArrayList<>(transaction.getOrders().size());
+        transaction.getOrders().forEach(o -> orders.add(new OrderLine(o.getProductName(), o.getQuantity(), o.getPrice())));
+        Transaction copy = shallowCopy(transaction);
+        copy.setOrders(orders);
+        return copy;
+    }
+
+    static Transaction shallowCopy(Transaction transaction) {
+        Transaction copy = new Transaction();
+        copy.setId(transaction.getId());
+        copy.setPrice(transaction.getPrice());
+        copy.setType(transaction.getType());
+        copy.setStatus(transaction.getStatus());
+        copy.setOrders(transaction.getOrders());
+        copy.setOrdersFingerprint(transaction.getOrdersFingerprint());
+        copy.setCreatedAt(transaction.getCreatedAt());
+        copy.setUpdatedAt(transaction.getUpdatedAt());
+        copy.setVersion(transaction.getVersion());
+        return copy;
+    }
+
+    static Transaction shuffled(Transaction transaction, long seed) {
+        Transaction copy = copy(transaction);
+        Collections.shuffle(copy.getOrders(), new Random(seed));
+        return copy;
+    }
+}
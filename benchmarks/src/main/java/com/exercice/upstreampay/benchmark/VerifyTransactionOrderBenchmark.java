@@ -0,0 +1,61 @@
+package com.exercice.upstreampay.benchmark;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.service.impl.TransactionServiceImpl;
+import com.exercice.upstreampay.service.util.OrderLines;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerifyTransactionOrderBenchmark {
+
+    @Param({ "1", "10", "100", "1000", "5000" })
+    private int orderLines;
+
+    private TransactionServiceImpl transactionService;
+
+    private Transaction saved;
+
+    private Transaction sameOrder;
+
+    private Transaction shuffled;
+
+    @Setup
+    public void setUp() {
+        transactionService = InMemoryTransactionRepository.newTransactionService(new InMemoryTransactionRepository().store());
+        saved = Transactions.newTransaction(orderLines);
+        sameOrder = Transactions.copy(saved);
+        shuffled = Transactions.shuffled(saved, 42);
+    }
+
+    @Benchmark
+    public boolean sameOrder() {
+        return transactionService.verifyTransactionOrder(saved, sameOrder);
+    }
+
+    @Benchmark
+    public boolean shuffledOrder() {
+        return transactionService.verifyTransactionOrder(saved, shuffled);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return OrderLines.fingerprint(shuffled.getOrders());
+    }
+}
@@ -0,0 +1,216 @@
+package com.exercice.upstreampay.loadtest;
+
+import com.exercice.upstreampay.UpstreamPayApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load test of the transaction endpoints.
+ * <p>
+ * Requests are sent at a fixed arrival rate whatever the response times, with the operation of each one drawn
+ * from the configured mix. Every rate of {@code --rates} is run for {@code --step-duration}; the latency
+ * percentiles of each operation and the throughput achieved at each rate are printed and written to
+ * {@code --report-dir}, with the full HdrHistogram distributions. Without {@code --target}, the application
+ * is started in this JVM, on the embedded log store by default or on the local MongoDB with {@code --backend=mongo}.
+ */
+public class LoadTest {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestOptions options;
+
+    private final TransactionWorkload workload;
+
+    private final Operation[] operations;
+
+    private final int[] cumulativeWeights;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    LoadTest(LoadTestOptions options, String baseUrl) {
+        this.options = options;
+        ConnectionProvider connections = ConnectionProvider
+                .builder("loadtest")
+                .maxConnections(options.maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient webClient = WebClient
+                .builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+        this.workload = new TransactionWorkload(webClient, options.orderLines, options.pageSize);
+        this.operations = options.mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext application = null;
+        Path dataDirectory = null;
+        String baseUrl = options.target;
+        if (baseUrl == null) {
+            Map<String, String> arguments = new LinkedHashMap<>();
+            arguments.put("server.port", "0");
+            arguments.put("logging.level.root", "WARN");
+            arguments.put("logging.level.com.exercice.upstreampay", "WARN");
+            arguments.put("application.storage.backend", options.backend);
+            if ("log".equals(options.backend)) {
+                dataDirectory = Files.createTempDirectory("upstreampay-loadtest");
+                arguments.put("application.storage.log.directory", dataDirectory.toString());
+            }
+            for (String argument : options.applicationArguments) {
+                arguments.put(argument.substring(2, argument.indexOf('=')), argument.substring(argument.indexOf('=') + 1));
+            }
+            List<String> applicationArgs = new ArrayList<>();
+            arguments.forEach((name, value) -> applicationArgs.add("--" + name + "=" + value));
+            application = new SpringApplicationBuilder(UpstreamPayApplication.class).run(applicationArgs.toArray(new String[0]));
+            baseUrl = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            new LoadTest(options, baseUrl).run();
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            if (dataDirectory != null) {
+                FileSystemUtils.deleteRecursively(dataDirectory);
+            }
+        }
+        System.exit(0);
+    }
+
+    void run() throws IOException {
+        options.describe().forEach((name, value) -> System.out.printf("%-14s %s%n", name, value));
+        workload.preload(options.preload);
+        if (!options.warmup.isZero()) {
+            System.out.printf("%nwarming up at %d/s for %s%n", options.rates.get(0), options.warmup);
+            runStep(options.rates.get(0), options.warmup);
+        }
+        List<StepResult> results = new ArrayList<>();
+        for (int rate : options.rates) {
+            StepResult result = runStep(rate, options.stepDuration);
+            result.print(System.out);
+            results.add(result);
+        }
+        Path reports = writeReports(results);
+        System.out.printf("%nreports written to %s%n", reports.toAbsolutePath());
+    }
+
+    private StepResult runStep(int rate, Duration duration) {
+        StepResult result = new StepResult(rate);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long arrivals = duration.toNanos() / interval;
+        long start = System.nanoTime();
+        for (long i = 0; i < arrivals; i++) {
+            long scheduled = start + i * interval;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.get() >= options.maxInFlight) {
+                result.shed();
+                continue;
+            }
+            TransactionWorkload.Request request = workload.request(nextOperation());
+            inFlight.incrementAndGet();
+            request.call.get().subscribe(
+                    response -> {
+                    },
+                    error -> {
+                        result.failed(request.operation, error);
+                        inFlight.decrementAndGet();
+                    },
+                    () -> {
+                        result.succeeded(request.operation, scheduled);
+                        inFlight.decrementAndGet();
+                    }
+            );
+        }
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        result.finished(System.nanoTime() - start);
+        return result;
+    }
+
+    private Operation nextOperation() {
+        int draw = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * Write the throughput curve, the summary of each operation at each rate, and the percentile distributions
+     * in the HdrHistogram format, which its plotter reads.
+     */
+    private Path writeReports(List<StepResult> results) throws IOException {
+        Path directory = Paths.get(options.reportDirectory, LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(directory.resolve("options.txt").toFile())) {
+            options.describe().forEach((name, value) -> out.printf("%s=%s%n", name, value));
+        }
+        try (PrintStream curve = new PrintStream(directory.resolve("throughput.csv").toFile());
+             PrintStream summary = new PrintStream(directory.resolve("summary.csv").toFile())) {
+            curve.println("rate,throughput,errors,shed,p50_ms,p99_ms,p999_ms,max_ms");
+            summary.println("rate,operation,count,errors,throughput,p50_ms,p99_ms,p999_ms,max_ms");
+            for (StepResult result : results) {
+                Histogram total = result.total();
+                curve.printf("%d,%.1f,%d,%d,%s%n", result.rate, result.throughput(total), result.errors(), result.shedCount(), percentiles(total));
+                for (Operation operation : Operation.values()) {
+                    Histogram histogram = result.latencies(operation);
+                    summary.printf("%d,%s,%d,%d,%.1f,%s%n", result.rate, operation, histogram.getTotalCount(),
+                            result.errors(operation), result.throughput(histogram), percentiles(histogram));
+                    writeDistribution(directory.resolve("rate-" + result.rate + "-" + operation.name().toLowerCase() + ".hgrm"), histogram);
+                }
+                writeDistribution(directory.resolve("rate-" + result.rate + "-all.hgrm"), total);
+            }
+        }
+        return directory;
+    }
+
+    private static String percentiles(Histogram histogram) {
+        return String.format("%.3f,%.3f,%.3f,%.3f", StepResult.millis(histogram, 50), StepResult.millis(histogram, 99),
+                StepResult.millis(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(file.toFile())) {
+            // microseconds recorded, milliseconds reported
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
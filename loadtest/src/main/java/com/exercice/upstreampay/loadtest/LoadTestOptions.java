@@ -0,0 +1,135 @@
+package com.exercice.upstreampay.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of the load test, given as {@code --name=value} arguments. The arguments starting with
+ * {@code --spring.}, {@code --server.}, {@code --management.}, {@code --logging.} or {@code --application.}
+ * are passed to the application when it is started in process.
+ */
+class LoadTestOptions {
+
+    private static final List<String> APPLICATION_PREFIXES = List.of("spring.", "server.", "management.", "logging.", "application.");
+
+    /**
+     * Base URL of a running instance; when absent, the application is started in process.
+     */
+    String target;
+
+    /**
+     * Storage backend of the in-process application: {@code mongo} for a local MongoDB, {@code log} for the embedded store.
+     */
+    String backend = "log";
+
+    /**
+     * Arrival rates, in requests per second, run one after the other to draw the throughput curve.
+     */
+    List<Integer> rates = List.of(100, 200, 400);
+
+    Duration stepDuration = Duration.ofSeconds(20);
+
+    Duration warmup = Duration.ofSeconds(10);
+
+    Map<Operation, Integer> mix = parseMix("create=30,authorize=15,capture=15,list=10,get=30");
+
+    int preload = 1000;
+
+    int orderLines = 5;
+
+    int pageSize = 20;
+
+    int maxConnections = 500;
+
+    /**
+     * Requests in flight from which new arrivals are counted as shed by the client instead of being sent.
+     */
+    int maxInFlight = 10_000;
+
+    String reportDirectory = System.getProperty("loadtest.reports", "target/reports");
+
+    final List<String> applicationArguments = new ArrayList<>();
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (APPLICATION_PREFIXES.stream().anyMatch(name::startsWith)) {
+                options.applicationArguments.add(arg);
+                continue;
+            }
+            switch (name) {
+                case "target":
+                    options.target = value;
+                    break;
+                case "backend":
+                    options.backend = value;
+                    break;
+                case "rates":
+                    options.rates = new ArrayList<>();
+                    for (String rate : value.split(",")) {
+                        options.rates.add(Integer.parseInt(rate.trim()));
+                    }
+                    break;
+                case "step-duration":
+                    options.stepDuration = Duration.parse(value);
+                    break;
+                case "warmup":
+                    options.warmup = Duration.parse(value);
+                    break;
+                case "mix":
+                    options.mix = parseMix(value);
+                    break;
+                case "preload":
+                    options.preload = Integer.parseInt(value);
+                    break;
+                case "order-lines":
+                    options.orderLines = Integer.parseInt(value);
+                    break;
+                case "page-size":
+                    options.pageSize = Integer.parseInt(value);
+                    break;
+                case "max-connections":
+                    options.maxConnections = Integer.parseInt(value);
+                    break;
+                case "max-in-flight":
+                    options.maxInFlight = Integer.parseInt(value);
+                    break;
+                case "report-dir":
+                    options.reportDirectory = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] weight = entry.split("=");
+            mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+
+    Map<String, String> describe() {
+        Map<String, String> description = new LinkedHashMap<>();
+        description.put("target", target == null ? "in process, " + backend + " backend" : target);
+        description.put("rates", rates.toString());
+        description.put("step-duration", stepDuration.toString());
+        description.put("warmup", warmup.toString());
+        description.put("mix", mix.toString());
+        description.put("application", applicationArguments.toString());
+        return description;
+    }
+}
@@ -0,0 +1,27 @@
+package com.exercice.upstreampay.loadtest;
+
+/**
+ * The requests of the workload.
+ */
+enum Operation {
+    /**
+     * {@code POST /api/transactions} of a NEW transaction.
+     */
+    CREATE,
+    /**
+     * {@code PUT /api/transactions/{id}} of a NEW transaction to AUTHORIZED.
+     */
+    AUTHORIZE,
+    /**
+     * {@code PUT /api/transactions/{id}} of an AUTHORIZED transaction to CAPTURED.
+     */
+    CAPTURE,
+    /**
+     * {@code GET /api/transactions} of a random page.
+     */
+    LIST,
+    /**
+     * {@code GET /api/transactions/{id}} of a known transaction.
+     */
+    GET,
+}
@@ -0,0 +1,114 @@
+package com.exercice.upstreampay.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measures of one arrival rate. Latencies are in microseconds and start at the time the request was scheduled
+ * to be sent, not at the time it was sent, so that a saturated system is not hidden by a late generator.
+ */
+class StepResult {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    final int rate;
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    private final Map<String, LongAdder> errorsByReason = new ConcurrentHashMap<>();
+
+    private final LongAdder shed = new LongAdder();
+
+    private long elapsedNanos;
+
+    StepResult(int rate) {
+        this.rate = rate;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    void succeeded(Operation operation, long scheduledNanos) {
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos);
+        latencies.get(operation).recordValue(Math.min(latency, HIGHEST_LATENCY_MICROS));
+    }
+
+    void failed(Operation operation, Throwable error) {
+        errors.get(operation).increment();
+        String reason = error instanceof WebClientResponseException
+                ? String.valueOf(((WebClientResponseException) error).getRawStatusCode())
+                : error.getClass().getSimpleName();
+        errorsByReason.computeIfAbsent(operation + " " + reason, key -> new LongAdder()).increment();
+    }
+
+    void shed() {
+        shed.increment();
+    }
+
+    void finished(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    Histogram latencies(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    Histogram total() {
+        Histogram total = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        latencies.values().forEach(total::add);
+        return total;
+    }
+
+    long errors(Operation operation) {
+        return errors.get(operation).sum();
+    }
+
+    long errors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    long shedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Successful requests per second over the step, until the last response.
+     */
+    double throughput(Histogram histogram) {
+        return elapsedNanos == 0 ? 0 : histogram.getTotalCount() / (elapsedNanos / 1e9);
+    }
+
+    void print(PrintStream out) {
+        Histogram total = total();
+        out.printf("%nrate %d/s: %.1f/s achieved in %s, %d ok, %d errors, %d shed%n",
+                rate, throughput(total), Duration.ofNanos(elapsedNanos), total.getTotalCount(), errors(), shedCount());
+        out.printf("  %-10s %8s %7s %10s %10s %10s %10s%n", "operation", "count", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            print(out, operation.name(), latencies.get(operation), errors(operation));
+        }
+        print(out, "ALL", total, errors());
+        errorsByReason.forEach((reason, count) -> out.printf("  error %s: %d%n", reason, count.sum()));
+    }
+
+    private static void print(PrintStream out, String name, Histogram histogram, long errors) {
+        out.printf("  %-10s %8d %7d %10.2f %10.2f %10.2f %10.2f%n",
+                name, histogram.getTotalCount(), errors,
+                millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+    }
+
+    static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
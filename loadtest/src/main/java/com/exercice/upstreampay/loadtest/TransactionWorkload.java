@@ -0,0 +1,150 @@
+package com.exercice.upstreampay.loadtest;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * The requests of the load test. Created transactions are queued to be authorized, authorized ones to be captured,
+ * and their ids are kept to be read; an operation without a transaction to work on falls back to the previous step
+ * of the lifecycle.
+ */
+class TransactionWorkload {
+
+    private static final int POOL_SIZE = 100_000;
+
+    private final WebClient webClient;
+
+    private final int orderLines;
+
+    private final int pageSize;
+
+    private final Queue<Transaction> created = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final Queue<Transaction> authorized = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final AtomicReferenceArray<String> knownIds = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private final AtomicLong knownCount = new AtomicLong();
+
+    TransactionWorkload(WebClient webClient, int orderLines, int pageSize) {
+        this.webClient = webClient;
+        this.orderLines = orderLines;
+        this.pageSize = pageSize;
+    }
+
+    static final class Request {
+
+        final Operation operation;
+        final Supplier<Mono<?>> call;
+
+        private Request(Operation operation, Supplier<Mono<?>> call) {
+            this.operation = operation;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Create transactions to work on before the measure starts.
+     */
+    void preload(int transactions) {
+        Flux.range(0, transactions).flatMap(i -> create(), 64).then().block();
+    }
+
+    Request request(Operation operation) {
+        switch (operation) {
+            case AUTHORIZE:
+                Transaction toAuthorize = created.poll();
+                return toAuthorize == null
+                        ? request(Operation.CREATE)
+                        : new Request(Operation.AUTHORIZE, () -> transition(toAuthorize, Status.AUTHORIZED, authorized));
+            case CAPTURE:
+                Transaction toCapture = authorized.poll();
+                return toCapture == null
+                        ? request(Operation.AUTHORIZE)
+                        : new Request(Operation.CAPTURE, () -> transition(toCapture, Status.CAPTURED, null));
+            case LIST:
+                return new Request(Operation.LIST, this::list);
+            case GET:
+                String id = randomKnownId();
+                return id == null ? request(Operation.CREATE) : new Request(Operation.GET, () -> get(id));
+            default:
+                return new Request(Operation.CREATE, this::create);
+        }
+    }
+
+    private Mono<Transaction> create() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderLine> orders = new ArrayList<>(orderLines);
+        double price = 0;
+        for (int i = 0; i < orderLines; i++) {
+            OrderLine line = new OrderLine("product-" + random.nextInt(1000), 1 + random.nextInt(5), 1 + random.nextInt(10_000) / 100.0);
+            orders.add(line);
+            price += line.getQuantity() * line.getPrice();
+        }
+        Transaction transaction = Transaction
+                .builder()
+                .price(price)
+                .type(PaymentType.values()[random.nextInt(PaymentType.values().length)])
+                .status(Status.NEW)
+                .orders(orders)
+                .build();
+        return webClient
+                .post()
+                .uri("/api/transactions")
+                .bodyValue(transaction)
+                .retrieve()
+                .bodyToMono(Transaction.class)
+                .doOnNext(saved -> {
+                    knownIds.set((int) (knownCount.getAndIncrement() % POOL_SIZE), saved.getId());
+                    created.offer(saved);
+                });
+    }
+
+    private Mono<Transaction> transition(Transaction transaction, Status status, Queue<Transaction> next) {
+        transaction.setStatus(status);
+        return webClient
+                .put()
+                .uri("/api/transactions/{id}", transaction.getId())
+                .bodyValue(transaction)
+                .retrieve()
+                .bodyToMono(Transaction.class)
+                .doOnNext(updated -> {
+                    if (next != null) {
+                        next.offer(updated);
+                    }
+                });
+    }
+
+    private Mono<?> list() {
+        long pages = Math.max(1, Math.min(knownCount.get(), POOL_SIZE) / pageSize);
+        long page = ThreadLocalRandom.current().nextLong(pages);
+        return webClient
+                .get()
+                .uri(uri -> uri.path("/api/transactions").queryParam("page", page).queryParam("size", pageSize).build())
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    private Mono<?> get(String id) {
+        return webClient.get().uri("/api/transactions/{id}", id).retrieve().toBodilessEntity();
+    }
+
+    private String randomKnownId() {
+        long known = Math.min(knownCount.get(), POOL_SIZE);
+        return known == 0 ? null : knownIds.get(ThreadLocalRandom.current().nextInt((int) known));
+    }
+}
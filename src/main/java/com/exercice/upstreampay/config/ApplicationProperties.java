@@ -0,0 +1,429 @@
+package com.exercice.upstreampay.config;
+
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Properties specific to UpstreamPay.
+ * <p>
+ * Properties are configured in the {@code application.yml} file.
+ */
+@Data
+@ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
+public class ApplicationProperties {
+
+    private final Batch batch = new Batch();
+
+    private final Stream stream = new Stream();
+
+    private final Cache cache = new Cache();
+
+    private final Count count = new Count();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Query query = new Query();
+
+    private final Stats stats = new Stats();
+
+    private final Events events = new Events();
+
+    private final Coalesce coalesce = new Coalesce();
+
+    private final Storage storage = new Storage();
+
+    private final Limit limit = new Limit();
+
+    private final Seed seed = new Seed();
+
+    private final Timing timing = new Timing();
+
+    private final Archive archive = new Archive();
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Maximum number of transactions written by a single bulk insert.
+         */
+        private int chunkSize = 500;
+
+        /**
+         * Number of chunks allowed in flight against the database at the same time.
+         */
+        private int concurrency = 2;
+    }
+
+    @Data
+    public static class Stream {
+
+        /**
+         * Number of documents fetched by each round trip of a streaming Mongo cursor.
+         */
+        private int batchSize = 256;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Whether transactions read by id are cached in process.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of cached transactions.
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * Time after which a cached transaction is read again from the database.
+         */
+        private Duration timeToLive = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Count {
+
+        public enum Strategy {
+            /**
+             * Exact count of the collection on every call.
+             */
+            EXACT,
+            /**
+             * Count read from the collection metadata.
+             */
+            ESTIMATED,
+            /**
+             * In-process counter maintained by the service and periodically reconciled with an exact count.
+             */
+            COUNTER,
+        }
+
+        private Strategy strategy = Strategy.EXACT;
+
+        /**
+         * Delay between two reconciliations of the in-process counter.
+         */
+        private Duration reconcileInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Idempotency {
+
+        /**
+         * Time during which an idempotency key is remembered.
+         */
+        private Duration timeToLive = Duration.ofHours(24);
+
+        /**
+         * Maximum number of recent keys also kept in process.
+         */
+        private long cacheSize = 10_000;
+
+        /**
+         * Time to wait for another instance to complete a request made with the same key.
+         */
+        private Duration pendingTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Query {
+
+        public enum UncoveredFilters {
+            /**
+             * Run the query and log a warning.
+             */
+            WARN,
+            /**
+             * Reject the query with a 400 (Bad Request).
+             */
+            REJECT,
+        }
+
+        /**
+         * What to do with a combination of filters that no index covers.
+         */
+        private UncoveredFilters uncoveredFilters = UncoveredFilters.WARN;
+    }
+
+    @Data
+    public static class Stats {
+
+        /**
+         * Width of the time buckets of the transaction statistics.
+         */
+        private Duration bucket = Duration.ofHours(1);
+
+        /**
+         * Interval between the writes of the increments of the statistics.
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * When the statistics are recomputed from the transactions, "-" to never do it.
+         */
+        private String rebuildCron = "0 0 3 * * *";
+    }
+
+    @Data
+    public static class Events {
+
+        public enum Source {
+            /**
+             * The writes of this instance.
+             */
+            LOCAL,
+            /**
+             * A MongoDB change stream, which needs a replica set.
+             */
+            CHANGE_STREAM,
+        }
+
+        public enum Overflow {
+            DROP_OLDEST,
+            DROP_LATEST,
+            DISCONNECT,
+        }
+
+        private Source source = Source.LOCAL;
+
+        /**
+         * Number of events buffered for each subscriber.
+         */
+        private int bufferSize = 256;
+
+        /**
+         * What to do when a subscriber buffer is full.
+         */
+        private Overflow overflow = Overflow.DROP_OLDEST;
+    }
+
+    @Data
+    public static class Coalesce {
+
+        /**
+         * Whether concurrent inserts of single transactions are written together.
+         */
+        private boolean enabled = false;
+
+        private int maxBatchSize = 64;
+
+        /**
+         * Time the first insert of a batch waits for others.
+         */
+        private Duration maxDelay = Duration.ofNanos(500_000);
+    }
+
+    @Data
+    public static class Storage {
+
+        public enum Backend {
+            /**
+             * The MongoDB transaction collection.
+             */
+            MONGO,
+            /**
+             * The embedded log-structured store. The statistics, the idempotency keys and the change stream
+             * events still need MongoDB.
+             */
+            LOG,
+        }
+
+        private Backend backend = Backend.MONGO;
+
+        private final Log log = new Log();
+
+        @Data
+        public static class Log {
+
+            /**
+             * Directory of the segment files.
+             */
+            private String directory = "data/transactions";
+
+            /**
+             * Size from which the active segment is sealed and a new one started.
+             */
+            private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+            /**
+             * Whether every write is forced to the disk before it completes.
+             */
+            private boolean syncWrites = false;
+
+            /**
+             * Share of overwritten bytes from which a sealed segment is compacted.
+             */
+            private double compactionMinGarbage = 0.5;
+
+            private Duration compactionInterval = Duration.ofMinutes(5);
+        }
+    }
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Whether the concurrent transaction requests are limited, the excess being rejected with 429.
+         */
+        private boolean enabled = false;
+
+        private final Kind read = new Kind(100, 10, 1000, Duration.ofMillis(50));
+
+        private final Kind write = new Kind(50, 5, 500, Duration.ofMillis(100));
+
+        /**
+         * Factor applied to a limit when a request is too slow or fails because of the database.
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * Delay the rejected clients are asked to wait before retrying.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        @Data
+        public static class Kind {
+
+            private int initialLimit;
+
+            private int minLimit;
+
+            private int maxLimit;
+
+            /**
+             * Latency above which a request counts as a sign of overload.
+             */
+            private Duration latencyThreshold;
+
+            public Kind(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold) {
+                this.initialLimit = initialLimit;
+                this.minLimit = minLimit;
+                this.maxLimit = maxLimit;
+                this.latencyThreshold = latencyThreshold;
+            }
+        }
+    }
+
+    @Data
+    public static class Seed {
+
+        /**
+         * Number of transactions generated by the {@code seed} profile.
+         */
+        private long count = 1_000_000;
+
+        /**
+         * Seed of the generator: the same seed always generates the same transactions.
+         */
+        private long randomSeed = 42;
+
+        /**
+         * Number of transactions written by each bulk insert.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Number of chunks generated and inserted at the same time.
+         */
+        private int concurrency = 4;
+
+        /**
+         * Number of distinct products of the order lines.
+         */
+        private int products = 1000;
+
+        /**
+         * Relative weights of the statuses, 0 to leave one out.
+         */
+        private final Map<Status, Integer> statuses = new EnumMap<>(Map.of(
+                Status.NEW, 20,
+                Status.AUTHORIZED, 20,
+                Status.CAPTURED, 60
+        ));
+
+        /**
+         * Relative weights of the payment types, 0 to leave one out.
+         */
+        private final Map<PaymentType, Integer> types = new EnumMap<>(Map.of(
+                PaymentType.BANK_CARD, 60,
+                PaymentType.PAYPAL, 30,
+                PaymentType.GIFT_CARD, 10
+        ));
+
+        /**
+         * Relative weights of the numbers of order lines of a transaction.
+         */
+        private final Map<Integer, Integer> orderLines = new TreeMap<>(Map.of(
+                1, 40,
+                2, 25,
+                3, 15,
+                4, 10,
+                5, 10
+        ));
+
+        /**
+         * Whether the application stops once the transactions are loaded, to use the profile as a command.
+         */
+        private boolean exit = false;
+    }
+
+    @Data
+    public static class Timing {
+
+        /**
+         * Whether the transaction requests are timed step by step, and the steps returned in a Server-Timing header.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Duration from which a request is logged with its steps.
+         */
+        private Duration slowThreshold = Duration.ofMillis(200);
+
+        /**
+         * Share of the slow requests which are logged, from 0 to 1.
+         */
+        private double slowSampleRate = 0.1;
+    }
+
+    @Data
+    public static class Archive {
+
+        /**
+         * Whether the old CAPTURED transactions are moved from the store to the archive segments.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the archive segment files.
+         */
+        private String directory = "data/archive";
+
+        /**
+         * Time since their last update after which the CAPTURED transactions are archived.
+         */
+        private Duration minAge = Duration.ofDays(90);
+
+        private Duration interval = Duration.ofHours(1);
+
+        /**
+         * Number of transactions archived at once, in a single segment.
+         */
+        private int segmentTransactions = 50_000;
+
+        /**
+         * Size of the uncompressed blocks of a segment, the unit of decompression of a lookup.
+         */
+        private DataSize blockSize = DataSize.ofKilobytes(64);
+    }
+}
@@ -0,0 +1,59 @@
+package com.exercice.upstreampay.config;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Binary formats served next to JSON, and the negotiation of the format of the error responses.
+ */
+public final class BinaryMediaTypes {
+
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf(APPLICATION_CBOR_VALUE);
+
+    /**
+     * Concatenated CBOR items (RFC 8742), for the streaming responses.
+     */
+    public static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+    public static final MediaType APPLICATION_CBOR_SEQ = MediaType.valueOf(APPLICATION_CBOR_SEQ_VALUE);
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    /**
+     * Concatenated Smile values, for the streaming requests and responses.
+     */
+    public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+    public static final MediaType APPLICATION_STREAM_SMILE = MediaType.valueOf(APPLICATION_STREAM_SMILE_VALUE);
+
+    private BinaryMediaTypes() {
+    }
+
+    /**
+     * Find the binary format an error response should be written in: the one the client prefers, unless it
+     * accepts JSON as well.
+     *
+     * @param exchange the current exchange.
+     * @return the binary media type, or empty for JSON.
+     */
+    public static Optional<MediaType> errorMediaType(ServerWebExchange exchange) {
+        List<MediaType> accepted = new ArrayList<>(exchange.getRequest().getHeaders().getAccept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON) || mediaType.isCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON)) {
+                return Optional.empty();
+            }
+            if (APPLICATION_CBOR.equalsTypeAndSubtype(mediaType) || APPLICATION_CBOR_SEQ.equalsTypeAndSubtype(mediaType)) {
+                return Optional.of(APPLICATION_CBOR);
+            }
+            if (APPLICATION_SMILE.equalsTypeAndSubtype(mediaType) || APPLICATION_STREAM_SMILE.equalsTypeAndSubtype(mediaType)) {
+                return Optional.of(APPLICATION_SMILE);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,56 @@
+package com.exercice.upstreampay.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR encoder of single values, collections and {@code application/cbor-seq} streams.
+ * <p>
+ * {@link Jackson2CborEncoder} refuses any publisher, even a {@link Mono}. A {@link Flux} is written as one
+ * CBOR array, unless {@code application/cbor-seq} was negotiated: every element is then written as its own
+ * CBOR item, which is self-delimiting, so that the elements are sent as they are emitted.
+ */
+public class CborEncoder extends Jackson2CborEncoder {
+
+    private static final ResolvableType LIST_TYPE = ResolvableType.forClass(List.class);
+
+    public CborEncoder(ObjectMapper mapper) {
+        super(mapper, BinaryMediaTypes.APPLICATION_CBOR, BinaryMediaTypes.APPLICATION_CBOR_SEQ);
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return List.of(BinaryMediaTypes.APPLICATION_CBOR_SEQ);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(
+            Publisher<?> inputStream,
+            DataBufferFactory bufferFactory,
+            ResolvableType elementType,
+            MimeType mimeType,
+            Map<String, Object> hints
+    ) {
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+        if (mimeType != null && BinaryMediaTypes.APPLICATION_CBOR_SEQ.equalsTypeAndSubtype(mimeType)) {
+            return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+        }
+        return Flux.from(inputStream)
+                .collectList()
+                .map(values -> encodeValue(values, bufferFactory, LIST_TYPE, mimeType, hints))
+                .flux();
+    }
+}
@@ -0,0 +1,12 @@
+package com.exercice.upstreampay.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
+
+/**
+ * Configuration of the MongoDB mapping: {@code @CreatedDate} and {@code @LastModifiedDate} fields are filled on save.
+ */
+@Configuration
+@EnableReactiveMongoAuditing
+public class DatabaseConfiguration {
+}
@@ -0,0 +1,100 @@
+package com.exercice.upstreampay.config;
+
+import com.exercice.upstreampay.management.RequestTimings;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encoder recording the {@code encode} span of the current request: the time from the last value received to the
+ * first buffer written, that is the encoding of a single value or of a collected list, or of the first element of
+ * a stream. The span ends before the response is committed, so that it is part of the {@code Server-Timing} header.
+ */
+public class TimedEncoder implements HttpMessageEncoder<Object> {
+
+    private final Encoder<Object> delegate;
+
+    @SuppressWarnings("unchecked")
+    public TimedEncoder(Encoder<?> delegate) {
+        this.delegate = (Encoder<Object>) delegate;
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(
+            Publisher<?> inputStream,
+            DataBufferFactory bufferFactory,
+            ResolvableType elementType,
+            MimeType mimeType,
+            Map<String, Object> hints
+    ) {
+        return Flux.deferContextual(context -> {
+            if (!context.hasKey(RequestTimings.CONTEXT_KEY)) {
+                return delegate.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+            }
+            RequestTimings timings = context.get(RequestTimings.CONTEXT_KEY);
+            AtomicLong lastValueAt = new AtomicLong(System.nanoTime());
+            AtomicBoolean recorded = new AtomicBoolean();
+            // the delegates tell single values from streams by the type of the publisher
+            Publisher<?> input = inputStream instanceof Mono
+                    ? Mono.from(inputStream).doOnNext(value -> lastValueAt.set(System.nanoTime()))
+                    : Flux.from(inputStream).doOnNext(value -> lastValueAt.set(System.nanoTime()));
+            return Flux.from(delegate.encode(input, bufferFactory, elementType, mimeType, hints)).doOnNext(buffer -> {
+                if (recorded.compareAndSet(false, true)) {
+                    timings.record("encode", System.nanoTime() - lastValueAt.get());
+                }
+            });
+        });
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType, MimeType mimeType, Map<String, Object> hints) {
+        return delegate.encodeValue(value, bufferFactory, valueType, mimeType, hints);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return delegate.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return delegate.getEncodableMimeTypes();
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes(ResolvableType elementType) {
+        return delegate.getEncodableMimeTypes(elementType);
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return delegate instanceof HttpMessageEncoder ? ((HttpMessageEncoder<?>) delegate).getStreamingMediaTypes() : List.of();
+    }
+
+    @Override
+    public Map<String, Object> getEncodeHints(
+            ResolvableType actualType,
+            ResolvableType elementType,
+            MediaType mediaType,
+            ServerHttpRequest request,
+            ServerHttpResponse response
+    ) {
+        return delegate instanceof HttpMessageEncoder
+                ? ((HttpMessageEncoder<?>) delegate).getEncodeHints(actualType, elementType, mediaType, request, response)
+                : Map.of();
+    }
+}
@@ -1,6 +1,8 @@
 package com.exercice.upstreampay.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
@@ -8,6 +10,13 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.ReactiveSortHandlerMethodArgumentResolver;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
 import org.springframework.web.reactive.config.WebFluxConfigurer;
 import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
 import org.springframework.web.server.WebExceptionHandler;
@@ -22,6 +31,36 @@ public class WebConfigurer implements WebFluxConfigurer {
 
     private final Logger log = LoggerFactory.getLogger(WebConfigurer.class);
 
+    private final ObjectMapper jsonMapper;
+
+    private final ObjectMapper cborMapper;
+
+    private final ObjectMapper smileMapper;
+
+    public WebConfigurer(ObjectMapper jsonMapper, Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
+        this.jsonMapper = jsonMapper;
+        // same modules and features as the JSON mapper, so that every format carries the same fields
+        // (configure, not build: setting a factory on the shared builder would change the JSON mapper too)
+        this.cborMapper = new ObjectMapper(new CBORFactory());
+        jackson2ObjectMapperBuilder.configure(cborMapper);
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        jackson2ObjectMapperBuilder.configure(smileMapper);
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        // the codecs fall back to the JSON media types when none are given
+        MimeType[] smileTypes = { BinaryMediaTypes.APPLICATION_SMILE, BinaryMediaTypes.APPLICATION_STREAM_SMILE };
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper, smileTypes));
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, smileTypes));
+        // custom writers come before the default ones: JSON first, so that it stays the format of */*;
+        // they are timed for the Server-Timing header, Smile included, which then never reaches its default writer
+        configurer.customCodecs().register(new TimedEncoder(new Jackson2JsonEncoder(jsonMapper)));
+        configurer.customCodecs().register(new TimedEncoder(new CborEncoder(cborMapper)));
+        configurer.customCodecs().register(new TimedEncoder(new Jackson2SmileEncoder(smileMapper, smileTypes)));
+        configurer.customCodecs().register(new Jackson2CborDecoder(cborMapper, BinaryMediaTypes.APPLICATION_CBOR));
+    }
+
     // TODO: remove when this is supported in spring-boot
     @Bean
     HandlerMethodArgumentResolver reactivePageableHandlerMethodArgumentResolver() {
@@ -38,6 +77,14 @@ public class WebConfigurer implements WebFluxConfigurer {
     @Order(-2)
     // The handler must have precedence over WebFluxResponseStatusExceptionHandler and Spring Boot's ErrorWebExceptionHandler
     public WebExceptionHandler problemExceptionHandler(ObjectMapper mapper, ProblemHandling problemHandling) {
-        return new ProblemExceptionHandler(mapper, problemHandling);
+        // the handler writes the problem with its own mapper: use the one of the format negotiated by ExceptionHandler
+        ProblemExceptionHandler json = new ProblemExceptionHandler(mapper, problemHandling);
+        ProblemExceptionHandler cbor = new ProblemExceptionHandler(cborMapper, problemHandling);
+        ProblemExceptionHandler smile = new ProblemExceptionHandler(smileMapper, problemHandling);
+        return (exchange, ex) -> BinaryMediaTypes
+                .errorMediaType(exchange)
+                .map(mediaType -> BinaryMediaTypes.APPLICATION_CBOR.equals(mediaType) ? cbor : smile)
+                .orElse(json)
+                .handle(exchange, ex);
     }
 }
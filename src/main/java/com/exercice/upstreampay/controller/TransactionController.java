@@ -1,30 +1,66 @@
 package com.exercice.upstreampay.controller;
 
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.config.BinaryMediaTypes;
 import com.exercice.upstreampay.controller.error.BadRequestAlertException;
 import com.exercice.upstreampay.controller.utils.HeaderUtil;
 import com.exercice.upstreampay.controller.utils.PaginationUtil;
-import com.exercice.upstreampay.controller.utils.ResponseUtil;
+import com.exercice.upstreampay.controller.utils.ETagUtil;
+import com.exercice.upstreampay.controller.utils.SmileValueReader;
 import com.exercice.upstreampay.controller.validator.TransactionValidator;
+import com.exercice.upstreampay.controller.vm.BatchItemResultVM;
+import com.exercice.upstreampay.controller.vm.BulkTransitionVM;
+import com.exercice.upstreampay.controller.vm.TransitionResultVM;
 import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.management.RequestTimings;
+import com.exercice.upstreampay.management.TransactionMetrics;
 import com.exercice.upstreampay.service.TransactionService;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.service.dto.TransactionEventDTO;
+import com.exercice.upstreampay.service.dto.TransactionStatsDTO;
+import com.exercice.upstreampay.service.events.TransactionEventPublisher;
+import com.exercice.upstreampay.service.idempotency.IdempotencyService;
+import com.exercice.upstreampay.service.stats.TransactionStatsService;
+import com.exercice.upstreampay.storage.InsertOutcome;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
@@ -33,10 +69,31 @@ public class TransactionController {
     private static final String ENTITY_NAME = "transaction";
     private final TransactionService transactionService;
     private final TransactionValidator transactionValidator;
+    private final ApplicationProperties applicationProperties;
+    private final TransactionMetrics transactionMetrics;
+    private final IdempotencyService idempotencyService;
+    private final TransactionStatsService transactionStatsService;
+    private final TransactionEventPublisher transactionEventPublisher;
+    private final ObjectMapper objectMapper;
 
-    public TransactionController(TransactionService transactionService, TransactionValidator transactionValidator) {
+    public TransactionController(
+            TransactionService transactionService,
+            TransactionValidator transactionValidator,
+            ApplicationProperties applicationProperties,
+            TransactionMetrics transactionMetrics,
+            IdempotencyService idempotencyService,
+            TransactionStatsService transactionStatsService,
+            TransactionEventPublisher transactionEventPublisher,
+            ObjectMapper objectMapper
+    ) {
         this.transactionService = transactionService;
         this.transactionValidator = transactionValidator;
+        this.applicationProperties = applicationProperties;
+        this.transactionMetrics = transactionMetrics;
+        this.idempotencyService = idempotencyService;
+        this.transactionStatsService = transactionStatsService;
+        this.transactionEventPublisher = transactionEventPublisher;
+        this.objectMapper = objectMapper;
     }
 
     private final Logger log = LoggerFactory.getLogger(TransactionController.class);
@@ -44,20 +101,27 @@ public class TransactionController {
     /**
      * {@code POST  /transactions} : Create a new transaction.
      *
-     * @param transaction the transaction to create.
+     * @param transaction    the transaction to create.
+     * @param idempotencyKey an optional key: the requests repeated with the same key return the transaction created by the first one.
      * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new transaction, or with status {@code 400 (Bad Request)} if the transaction has already an ID.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/transactions")
     @Operation(description = "create new transaction.")
-    public Mono<ResponseEntity<Transaction>> createTransaction(@Valid @RequestBody Transaction transaction) throws URISyntaxException {
+    public Mono<ResponseEntity<Transaction>> createTransaction(
+            @Valid @RequestBody Transaction transaction,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) throws URISyntaxException {
         log.debug("REST request to save Transaction : {}", transaction);
         if (transaction.getId() != null) {
             throw new BadRequestAlertException("A new transaction cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        transactionValidator.validate(transaction);
-        return transactionService
-                .save(transaction)
+        Mono<Transaction> saved = RequestTimings
+                .run("validate", () -> transactionValidator.validate(transaction))
+                .then(Mono.defer(() -> StringUtils.isBlank(idempotencyKey)
+                        ? transactionService.save(transaction)
+                        : idempotencyService.save(idempotencyKey, transaction)));
+        return saved
                 .map(result -> {
                     try {
                         return ResponseEntity
@@ -70,13 +134,155 @@ public class TransactionController {
                 });
     }
 
+    /**
+     * {@code POST  /transactions/batch} : Create new transactions from a stream of newline-delimited JSON documents.
+     * <p>
+     * Every line is read and validated on its own; valid lines are inserted by chunks of
+     * {@code application.batch.chunk-size} documents and the body is only read as fast as the chunks are written.
+     *
+     * @param lines the transactions to create, one JSON document per line.
+     * @return one result line per input line, in the same order, with the created id or the error of the line.
+     */
+    @PostMapping(
+            value = "/transactions/batch",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = {
+                    MediaType.APPLICATION_NDJSON_VALUE,
+                    BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE,
+                    BinaryMediaTypes.APPLICATION_CBOR_SEQ_VALUE,
+            }
+    )
+    @Operation(description = "create new transactions from a newline-delimited JSON stream.")
+    public Flux<BatchItemResultVM> createTransactions(@RequestBody Flux<String> lines) {
+        log.debug("REST request to save a batch of Transactions");
+        return saveBatch(lines.filter(StringUtils::isNotBlank).map(line -> {
+            try {
+                return readBatchLine(objectMapper.createParser(line));
+            } catch (IOException e) {
+                return BatchLine.unreadable(e);
+            }
+        }));
+    }
+
+    /**
+     * {@code POST  /transactions/batch} : Create new transactions from a stream of Smile values.
+     * <p>
+     * As with newline-delimited JSON, except that a value which is not valid Smile ends the stream: the values
+     * are not delimited, so the following ones cannot be found. Its result line is the last one.
+     *
+     * @param body the transactions to create, as concatenated Smile values.
+     * @return one result line per input value, in the same order, with the created id or the error of the value.
+     */
+    @PostMapping(
+            value = "/transactions/batch",
+            consumes = BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE,
+            produces = {
+                    MediaType.APPLICATION_NDJSON_VALUE,
+                    BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE,
+                    BinaryMediaTypes.APPLICATION_CBOR_SEQ_VALUE,
+            }
+    )
+    @Operation(description = "create new transactions from a Smile stream.")
+    public Flux<BatchItemResultVM> createTransactionsFromSmile(@RequestBody Flux<DataBuffer> body) {
+        log.debug("REST request to save a Smile batch of Transactions");
+        return saveBatch(SmileValueReader
+                .read(body)
+                .map(value -> readBatchLine(value.asParser(objectMapper)))
+                .onErrorResume(IOException.class, e -> Mono.just(BatchLine.unreadable(e))));
+    }
+
+    private Flux<BatchItemResultVM> saveBatch(Flux<BatchLine> lines) {
+        ApplicationProperties.Batch batch = applicationProperties.getBatch();
+        return lines
+                .index()
+                .buffer(batch.getChunkSize())
+                .flatMapSequential(this::saveChunk, batch.getConcurrency(), 1);
+    }
+
+    private BatchLine readBatchLine(JsonParser value) {
+        try (value) {
+            return BatchLine.read(objectMapper.readValue(value, Transaction.class));
+        } catch (IOException e) {
+            return BatchLine.unreadable(e);
+        }
+    }
+
+    private Flux<BatchItemResultVM> saveChunk(List<Tuple2<Long, BatchLine>> chunk) {
+        BatchItemResultVM[] results = new BatchItemResultVM[chunk.size()];
+        List<Transaction> accepted = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            long index = chunk.get(i).getT1();
+            BatchLine line = chunk.get(i).getT2();
+            BadRequestAlertException error = line.error;
+            if (error == null) {
+                try {
+                    validateNewTransaction(line.transaction);
+                    accepted.add(line.transaction);
+                    positions.add(i);
+                    continue;
+                } catch (BadRequestAlertException e) {
+                    error = e;
+                }
+            }
+            transactionMetrics.rejected(error.getErrorKey());
+            results[i] = BatchItemResultVM.rejected(index, error.getErrorKey(), error.getTitle());
+        }
+        if (accepted.isEmpty()) {
+            return Flux.fromArray(results);
+        }
+        return transactionService
+                .saveAll(accepted)
+                .collectList()
+                .map(outcomes -> {
+                    for (int j = 0; j < outcomes.size(); j++) {
+                        int position = positions.get(j);
+                        InsertOutcome outcome = outcomes.get(j);
+                        long index = chunk.get(position).getT1();
+                        if (outcome.isInserted()) {
+                            results[position] = BatchItemResultVM.created(index, outcome.getTransaction().getId());
+                        } else {
+                            log.warn("Insert of the Transaction of batch line {} failed: {}", index, outcome.getError().getMessage());
+                            results[position] = BatchItemResultVM.rejected(index, "insertfailed", "The transaction could not be inserted");
+                        }
+                    }
+                    return results;
+                })
+                .onErrorResume(e -> {
+                    // the inserts may have been written: a client retrying these lines could duplicate them
+                    log.error("Bulk insert of {} Transactions failed, and their outcome is unknown", accepted.size(), e);
+                    for (int position : positions) {
+                        results[position] = BatchItemResultVM.rejected(
+                                chunk.get(position).getT1(),
+                                "insertunknown",
+                                "The transaction may or may not have been inserted"
+                        );
+                    }
+                    return Mono.just(results);
+                })
+                .flatMapMany(Flux::fromArray);
+    }
+
+    private void validateNewTransaction(Transaction transaction) {
+        if (transaction.getId() != null) {
+            throw new BadRequestAlertException("A new transaction cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        transactionValidator.validate(transaction);
+        if (!Status.NEW.equals(transaction.getStatus())) {
+            throw new BadRequestAlertException("A new transaction must be with NEW status", "Transaction", "error.transaction.status");
+        }
+    }
+
     /**
      * {@code PUT  /transactions/:id} : Updates an existing transaction.
      *
      * @param id          the id of the transaction to save.
      * @param transaction the transaction to update.
+     * @param ifMatch     an optional entity tag of the transaction: the update only applies to this version.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated transaction,
      * or with status {@code 400 (Bad Request)} if the transaction is not valid,
+     * or with status {@code 409 (Conflict)} if the transaction was modified concurrently,
+     * or with status {@code 412 (Precondition Failed)} if the transaction does not exist or is not at the version of the {@code If-Match} tag,
      * or with status {@code 500 (Internal Server Error)} if the transaction couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -84,7 +290,8 @@ public class TransactionController {
     @Operation(description = "edit the given transaction by id.")
     public Mono<ResponseEntity<Transaction>> updateTransaction(
             @PathVariable(value = "id", required = false) final String id,
-            @Valid @RequestBody Transaction transaction
+            @Valid @RequestBody Transaction transaction,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Transaction : {}, {}", id, transaction);
         if (transaction.getId() == null) {
@@ -93,29 +300,84 @@ public class TransactionController {
         if (!Objects.equals(id, transaction.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
+        boolean conditional = StringUtils.isNotBlank(ifMatch) && !ifMatch.trim().equals("*");
+        if (conditional) {
+            // the tag is the version: the update is conditioned on it, without reading the transaction first
+            Long version = ETagUtil.version(ifMatch);
+            if (version == null) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match is not a tag of this transaction version");
+            }
+            transaction.setVersion(version);
+        }
 
         return transactionService
-                .existsById(id)
-                .flatMap(exists -> {
-                    if (!exists) {
-                        return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                    }
+                .update(transaction)
+                .onErrorMap(
+                        e -> conditional && e instanceof OptimisticLockingFailureException,
+                        e -> new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The transaction is not at the If-Match version", e)
+                )
+                .onErrorMap(
+                        e -> conditional && e instanceof BadRequestAlertException && "idnotfound".equals(((BadRequestAlertException) e).getErrorKey()),
+                        e -> new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "No transaction matches the If-Match tag", e)
+                )
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .map(result ->
+                        ResponseEntity
+                                .ok()
+                                .eTag(ETagUtil.transaction(result.getVersion(), TransactionFields.ALL))
+                                .varyBy(HttpHeaders.ACCEPT)
+                                .headers(HeaderUtil.createEntityUpdateAlert("", true, ENTITY_NAME, result.getId()))
+                                .body(result)
+                );
+    }
 
-                    return transactionService
-                            .update(transaction)
-                            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                            .map(result ->
-                                    ResponseEntity
-                                            .ok()
-                                            .headers(HeaderUtil.createEntityUpdateAlert("", true, ENTITY_NAME, result.getId()))
-                                            .body(result)
-                            );
-                });
+    /**
+     * {@code POST  /transactions/transitions} : Move transactions to a status, such as the authorized transactions of a settlement run to CAPTURED.
+     * <p>
+     * The transactions are given by their ids or by a filter, and are updated by chunks of
+     * {@code application.batch.chunk-size} with a single bulk write each. A transaction whose status cannot be
+     * moved to the new one is left as it is, as with {@code PUT /transactions/:id}.
+     *
+     * @param transition the new status, and the ids of the transactions or a non-empty filter.
+     * @return one result line per transaction as its chunk is written, with its outcome,
+     * or with status {@code 400 (Bad Request)} if the request is not valid,
+     * or with status {@code 429 (Too Many Requests)} if the writes stay over their limit before the first line;
+     * once lines were written, the transactions of a chunk which stays over the limit get a {@code REJECTED} line.
+     */
+    @PostMapping(
+            value = "/transactions/transitions",
+            produces = {
+                    MediaType.APPLICATION_NDJSON_VALUE,
+                    BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE,
+                    BinaryMediaTypes.APPLICATION_CBOR_SEQ_VALUE,
+            }
+    )
+    @Operation(description = "move the given transactions, or the transactions matching a filter, to a status.")
+    public Flux<TransitionResultVM> transitionTransactions(@RequestBody BulkTransitionVM transition) {
+        log.debug("REST request to move Transactions : {}", transition);
+        Status status = transition.getStatus();
+        if (status == null) {
+            throw new BadRequestAlertException("The status must be not empty", ENTITY_NAME, "error.status");
+        }
+        boolean byIds = transition.getIds() != null;
+        boolean byFilter = transition.getFilter() != null;
+        if (byIds == byFilter) {
+            throw new BadRequestAlertException("Either the ids or a filter must be given", ENTITY_NAME, "transitiontarget");
+        }
+        if (byFilter && transition.getFilter().isEmpty()) {
+            throw new BadRequestAlertException("The filter must not be empty", ENTITY_NAME, "filterempty");
+        }
+        return (byIds
+                ? transactionService.transitionAll(Flux.fromIterable(transition.getIds()), status)
+                : transactionService.transitionAll(transition.getFilter(), status))
+                .map(outcome -> TransitionResultVM.of(outcome, status));
     }
 
     /**
      * {@code GET  /transactions} : get all the transactions.
      *
+     * @param criteria the optional filters on status, payment type, creation time and price.
+     * @param fields   the optional comma-separated fields to return, the id being always returned.
      * @param pageable the pagination information.
      * @param request  a {@link ServerHttpRequest} request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of transactions in body.
@@ -123,38 +385,240 @@ public class TransactionController {
     @GetMapping("/transactions")
     @Operation(description = "get all transactions.")
     public Mono<ResponseEntity<List<Transaction>>> getAllTransactions(
+            @org.springdoc.api.annotations.ParameterObject TransactionCriteria criteria,
+            @RequestParam(value = "fields", required = false) String fields,
             @org.springdoc.api.annotations.ParameterObject Pageable pageable,
             ServerHttpRequest request
     ) {
-        log.debug("REST request to get a page of Transactions");
+        log.debug("REST request to get a page of Transactions : {}", criteria);
+        TransactionFields fieldset = TransactionFields.parse(fields);
+        // the versions are read for the tag, and left out of the body unless they are part of the fieldset
         return transactionService
-                .countAll()
-                .zipWith(transactionService.findAll(pageable).collectList())
-                .map(countWithEntities ->
-                        ResponseEntity
-                                .ok()
-                                .headers(
-                                        PaginationUtil.generatePaginationHttpHeaders(
-                                                UriComponentsBuilder.fromHttpRequest(request),
-                                                new PageImpl<>(countWithEntities.getT2(), pageable, countWithEntities.getT1())
-                                        )
-                                )
-                                .body(countWithEntities.getT2())
-                );
+                .count(criteria)
+                .zipWith(transactionService.findAll(criteria, pageable, fieldset.with(TransactionFields.VERSION)).collectList())
+                // an If-None-Match header listing the tag is answered with 304 (Not Modified), without serializing the page
+                .map(countWithEntities -> {
+                    List<Transaction> page = countWithEntities.getT2().stream().map(fieldset::project).collect(Collectors.toList());
+                    return ResponseEntity
+                            .ok()
+                            .eTag(ETagUtil.list(countWithEntities.getT2(), countWithEntities.getT1(), fieldset))
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .headers(
+                                    PaginationUtil.generatePaginationHttpHeaders(
+                                            UriComponentsBuilder.fromHttpRequest(request),
+                                            new PageImpl<>(page, pageable, countWithEntities.getT1())
+                                    )
+                            )
+                            .body(page);
+                });
+    }
+
+    /**
+     * {@code GET  /transactions?cursor=} : get a keyset page of the transactions, ordered by id.
+     * <p>
+     * Each page seeks past the last id of the previous one, so deep pages cost the same as the first one.
+     * An empty cursor starts from the beginning, the following cursors are found in the {@code next} link.
+     *
+     * @param cursor   the opaque cursor returned with the previous page.
+     * @param count    whether the total number of transactions must be computed.
+     * @param fields   the optional comma-separated fields to return, the id being always returned.
+     * @param pageable the pagination information, only its size is used.
+     * @param request  a {@link ServerHttpRequest} request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of transactions in body,
+     * or with status {@code 400 (Bad Request)} if the cursor is not valid.
+     */
+    @GetMapping(value = "/transactions", params = "cursor")
+    @Operation(description = "get transactions by keyset page.")
+    public Mono<ResponseEntity<List<Transaction>>> getAllTransactionsByCursor(
+            @RequestParam(value = "cursor", required = false, defaultValue = "") String cursor,
+            @RequestParam(value = "count", required = false, defaultValue = "false") boolean count,
+            @RequestParam(value = "fields", required = false) String fields,
+            @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+            ServerHttpRequest request
+    ) {
+        log.debug("REST request to get a keyset page of Transactions : {}", cursor);
+        String lastId = decodeCursor(cursor);
+        int size = pageable.getPageSize();
+        Mono<Optional<Long>> totalCount = count ? transactionService.countAll().map(Optional::of) : Mono.just(Optional.empty());
+        return transactionService
+                .findAllAfter(lastId, size + 1, TransactionFields.parse(fields))
+                .collectList()
+                .zipWith(totalCount)
+                .map(entitiesWithCount -> {
+                    List<Transaction> entities = entitiesWithCount.getT1();
+                    String nextCursor = null;
+                    if (entities.size() > size) {
+                        entities = entities.subList(0, size);
+                        nextCursor = PaginationUtil.encodeCursor(entities.get(size - 1).getId());
+                    }
+                    return ResponseEntity
+                            .ok()
+                            .headers(
+                                    PaginationUtil.generatePaginationHttpHeaders(
+                                            UriComponentsBuilder.fromHttpRequest(request),
+                                            nextCursor,
+                                            size,
+                                            entitiesWithCount.getT2().orElse(null)
+                                    )
+                            )
+                            .body(entities);
+                });
+    }
+
+    private String decodeCursor(String cursor) {
+        try {
+            String lastId = PaginationUtil.decodeCursor(cursor);
+            if (lastId != null && !ObjectId.isValid(lastId)) {
+                throw new IllegalArgumentException("Not an ObjectId: " + lastId);
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+        }
+    }
+
+    /**
+     * {@code GET  /transactions/stream} : stream all the transactions.
+     * <p>
+     * The transactions are written as they are read from the database cursor, which is only advanced
+     * when the client consumes the response, so the export runs in constant memory. With {@code archived},
+     * the archived transactions follow, read block by block from the archive segments.
+     *
+     * @param status   the optional status to filter on.
+     * @param type     the optional payment type to filter on.
+     * @param fields   the optional comma-separated fields to return, the id being always returned.
+     * @param archived whether the archived transactions are streamed too.
+     * @return the stream of transactions, as newline-delimited JSON, server-sent events, or a Smile or CBOR sequence.
+     */
+    @GetMapping(
+            value = "/transactions/stream",
+            produces = {
+                    MediaType.APPLICATION_NDJSON_VALUE,
+                    MediaType.TEXT_EVENT_STREAM_VALUE,
+                    BinaryMediaTypes.APPLICATION_STREAM_SMILE_VALUE,
+                    BinaryMediaTypes.APPLICATION_CBOR_SEQ_VALUE,
+            }
+    )
+    @Operation(description = "stream all transactions.")
+    public Flux<Transaction> streamTransactions(
+            @RequestParam(value = "status", required = false) Status status,
+            @RequestParam(value = "type", required = false) PaymentType type,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "archived", defaultValue = "false") boolean archived
+    ) {
+        log.debug("REST request to stream Transactions : {}, {}", status, type);
+        return transactionService.streamAll(status, type, TransactionFields.parse(fields), archived);
+    }
+
+    /**
+     * {@code GET  /transactions/events} : follow the status changes of the transactions.
+     *
+     * @param id     the optional id of the transaction to follow.
+     * @param status the optional status to follow.
+     * @param type   the optional payment type to follow.
+     * @return the server-sent events, one per status change.
+     */
+    @GetMapping(value = "/transactions/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(description = "follow transaction status changes.")
+    public Flux<ServerSentEvent<TransactionEventDTO>> followTransactionEvents(
+            @RequestParam(value = "id", required = false) String id,
+            @RequestParam(value = "status", required = false) Status status,
+            @RequestParam(value = "type", required = false) PaymentType type
+    ) {
+        log.debug("REST request to follow Transaction events : {}, {}, {}", id, status, type);
+        return transactionEventPublisher
+                .subscribe(id, status, type)
+                .map(event -> ServerSentEvent.builder(event).event("status").build());
+    }
+
+    /**
+     * {@code GET  /transactions/stats} : get the number and summed price of the transactions
+     * by status, payment type and time bucket of creation.
+     *
+     * @param from the optional start of the first bucket.
+     * @param to   the optional end of the range.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the statistics in body.
+     */
+    @GetMapping("/transactions/stats")
+    @Operation(description = "get transaction statistics.")
+    public Mono<ResponseEntity<TransactionStatsDTO>> getTransactionStats(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to
+    ) {
+        log.debug("REST request to get Transaction statistics : {}, {}", from, to);
+        return transactionStatsService.getStats(from, to).map(ResponseEntity::ok);
     }
 
     /**
      * {@code GET  /transactions/:id} : get the "id" transaction.
      *
-     * @param id the id of the transaction to retrieve.
+     * @param id     the id of the transaction to retrieve.
+     * @param fields the optional comma-separated fields to return, the id being always returned.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the transaction, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/transactions/{id}")
     @Operation(description = "get transaction by id.")
-    public Mono<ResponseEntity<Transaction>> getTransaction(@PathVariable String id) {
+    public Mono<ResponseEntity<Transaction>> getTransaction(
+            @PathVariable String id,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         log.debug("REST request to get Transaction : {}", id);
-        Mono<Transaction> transaction = transactionService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(transaction);
+        TransactionFields fieldset = TransactionFields.parse(fields);
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return getTransaction(id, fieldset);
+        }
+        // the version alone tells whether the client copy is current, without reading the whole transaction
+        return transactionService
+                .findOne(id, TransactionFields.parse(TransactionFields.VERSION))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(current -> {
+                    String eTag = ETagUtil.transaction(current.getVersion(), fieldset);
+                    if (eTag != null && ETagUtil.matches(ifNoneMatch, eTag)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).<Transaction>build());
+                    }
+                    return getTransaction(id, fieldset);
+                });
     }
 
+    private Mono<ResponseEntity<Transaction>> getTransaction(String id, TransactionFields fieldset) {
+        return transactionService
+                .findOne(id, fieldset.with(TransactionFields.VERSION))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .map(transaction -> {
+                    String eTag = ETagUtil.transaction(transaction.getVersion(), fieldset);
+                    return ResponseEntity
+                            .ok()
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .headers(headers -> {
+                                if (eTag != null) {
+                                    headers.setETag(eTag);
+                                }
+                            })
+                            .body(fieldset.project(transaction));
+                });
+    }
+
+    /**
+     * A line of a batch request, read as a transaction or rejected as unreadable.
+     */
+    private static final class BatchLine {
+
+        private final Transaction transaction;
+        private final BadRequestAlertException error;
+
+        private BatchLine(Transaction transaction, BadRequestAlertException error) {
+            this.transaction = transaction;
+            this.error = error;
+        }
+
+        private static BatchLine read(Transaction transaction) {
+            return new BatchLine(transaction, null);
+        }
+
+        private static BatchLine unreadable(IOException e) {
+            String message = e instanceof JsonProcessingException ? ((JsonProcessingException) e).getOriginalMessage() : e.getMessage();
+            return new BatchLine(null, new BadRequestAlertException("Unreadable transaction: " + message, ENTITY_NAME, "unreadable"));
+        }
+    }
 }
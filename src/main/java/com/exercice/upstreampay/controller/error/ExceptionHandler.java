@@ -1,12 +1,16 @@
 package com.exercice.upstreampay.controller.error;
 
+import com.exercice.upstreampay.config.BinaryMediaTypes;
 import com.exercice.upstreampay.controller.utils.HeaderUtil;
+import com.exercice.upstreampay.management.TransactionMetrics;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import org.zalando.problem.DefaultProblem;
 import org.zalando.problem.Problem;
@@ -33,8 +37,15 @@ public class ExceptionHandler implements ProblemHandling {
     private static final String PATH_KEY = "path";
     private static final String VIOLATIONS_KEY = "violations";
 
+    private final TransactionMetrics transactionMetrics;
+
+    public ExceptionHandler(TransactionMetrics transactionMetrics) {
+        this.transactionMetrics = transactionMetrics;
+    }
+
     /**
-     * Post-process the Problem payload to add the message key for the front-end if needed.
+     * Post-process the Problem payload to add the message key for the front-end if needed,
+     * and write it in the binary format the client asked for, if any.
      */
     @Override
     public Mono<ResponseEntity<Problem>> process(@Nullable ResponseEntity<Problem> entity, ServerWebExchange request) {
@@ -43,7 +54,7 @@ public class ExceptionHandler implements ProblemHandling {
         }
         Problem problem = entity.getBody();
         if (!(problem instanceof ConstraintViolationProblem || problem instanceof DefaultProblem)) {
-            return Mono.just(entity);
+            return Mono.just(withNegotiatedContentType(entity, problem, request));
         }
 
         ProblemBuilder builder = Problem
@@ -64,7 +75,14 @@ public class ExceptionHandler implements ProblemHandling {
                 builder.with(MESSAGE_KEY, "error.http." + problem.getStatus().getStatusCode());
             }
         }
-        return Mono.just(new ResponseEntity<>(builder.build(), entity.getHeaders(), entity.getStatusCode()));
+        return Mono.just(withNegotiatedContentType(entity, builder.build(), request));
+    }
+
+    private static ResponseEntity<Problem> withNegotiatedContentType(ResponseEntity<Problem> entity, Problem problem, ServerWebExchange request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(entity.getHeaders());
+        BinaryMediaTypes.errorMediaType(request).ifPresent(headers::setContentType);
+        return new ResponseEntity<>(problem, headers, entity.getStatusCode());
     }
 
     @Override
@@ -95,6 +113,7 @@ public class ExceptionHandler implements ProblemHandling {
 
     @org.springframework.web.bind.annotation.ExceptionHandler
     public Mono<ResponseEntity<Problem>> handleBadRequestAlertException(BadRequestAlertException ex, ServerWebExchange request) {
+        transactionMetrics.rejected(ex.getErrorKey());
         return create(
                 ex,
                 request,
@@ -104,10 +123,19 @@ public class ExceptionHandler implements ProblemHandling {
 
     @org.springframework.web.bind.annotation.ExceptionHandler
     public Mono<ResponseEntity<Problem>> handleConcurrencyFailure(ConcurrencyFailureException ex, ServerWebExchange request) {
+        transactionMetrics.rejected(ErrorConstants.ERR_CONCURRENCY_FAILURE);
         Problem problem = Problem.builder().withStatus(Status.CONFLICT).with(MESSAGE_KEY, ErrorConstants.ERR_CONCURRENCY_FAILURE).build();
         return create(ex, problem, request);
     }
 
+    /**
+     * Keep the headers of the exception, such as the {@code Retry-After} of the requests over the concurrency limit.
+     */
+    @Override
+    public Mono<ResponseEntity<Problem>> handleResponseStatusException(ResponseStatusException ex, ServerWebExchange request) {
+        return create(ex.getStatus(), ex, request, ex.getResponseHeaders());
+    }
+
     private boolean containsPackageName(String message) {
         // This list is for sure not complete
         return StringUtils.containsAny(message, "org.", "java.", "net.", "javax.", "com.", "io.", "de.", "com.exercice.upstreampay");
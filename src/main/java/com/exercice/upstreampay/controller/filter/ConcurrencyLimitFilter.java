@@ -0,0 +1,105 @@
+package com.exercice.upstreampay.controller.filter;
+
+import com.exercice.upstreampay.service.limit.ConcurrencyLimiter;
+import com.exercice.upstreampay.service.limit.TransactionLimiters;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission of the transaction requests within the limits of {@link TransactionLimiters}: a request over the
+ * limit of its kind is answered at once with {@code 429 (Too Many Requests)} and a {@code Retry-After} header.
+ * <p>
+ * GET and HEAD requests are reads, the others writes. The event feed does not hold database resources and is not
+ * limited, and the bulk transitions and batch inserts are limited chunk by chunk by the service. The export stream
+ * is admitted like any read, but gives its slot back as soon as its first items are written: an export lasting as
+ * long as its client reads must not starve the other reads, and its duration says nothing about the load.
+ */
+@Component
+public class ConcurrencyLimitFilter implements WebFilter {
+
+    private static final String TRANSACTIONS_PATH = "/api/transactions";
+
+    private static final Set<String> UNLIMITED_PATHS = Set.of(
+            "/api/transactions/events",
+            "/api/transactions/transitions",
+            "/api/transactions/batch"
+    );
+
+    private static final String STREAM_PATH = "/api/transactions/stream";
+
+    private final TransactionLimiters transactionLimiters;
+
+    public ConcurrencyLimitFilter(TransactionLimiters transactionLimiters) {
+        this.transactionLimiters = transactionLimiters;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!transactionLimiters.isEnabled() || !path.startsWith(TRANSACTIONS_PATH) || UNLIMITED_PATHS.contains(path)) {
+            return chain.filter(exchange);
+        }
+        HttpMethod method = exchange.getRequest().getMethod();
+        TransactionLimiters.Kind kind = method == HttpMethod.GET || method == HttpMethod.HEAD
+                ? TransactionLimiters.Kind.READ
+                : TransactionLimiters.Kind.WRITE;
+        ConcurrencyLimiter limiter = transactionLimiters.get(kind);
+        if (!limiter.tryAcquire()) {
+            return Mono.error(transactionLimiters.rejection(kind));
+        }
+        // the slot is given back exactly once, by whichever of the commit of a stream or the end comes first
+        AtomicBoolean released = new AtomicBoolean();
+        if (path.equals(STREAM_PATH)) {
+            exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> {
+                if (released.compareAndSet(false, true)) {
+                    limiter.onIgnored();
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        return chain
+                .filter(exchange)
+                .contextWrite(context -> context.put(TransactionLimiters.ADMITTED, true))
+                .doOnError(e -> {
+                    if (!released.compareAndSet(false, true)) {
+                        return;
+                    }
+                    if (TransactionLimiters.isOverload(e)) {
+                        limiter.onDropped();
+                    } else {
+                        release(limiter, exchange, start);
+                    }
+                })
+                .doFinally(signal -> {
+                    if (signal == SignalType.ON_ERROR || !released.compareAndSet(false, true)) {
+                        return;
+                    }
+                    if (signal == SignalType.ON_COMPLETE) {
+                        release(limiter, exchange, start);
+                    } else {
+                        limiter.onIgnored();
+                    }
+                });
+    }
+
+    /**
+     * The errors of the handlers are already written as responses: a server error counts as an overload.
+     */
+    private static void release(ConcurrencyLimiter limiter, ServerWebExchange exchange, long start) {
+        HttpStatus status = exchange.getResponse().getStatusCode();
+        if (status != null && status.is5xxServerError()) {
+            limiter.onDropped();
+        } else {
+            limiter.onSuccess(System.nanoTime() - start);
+        }
+    }
+}
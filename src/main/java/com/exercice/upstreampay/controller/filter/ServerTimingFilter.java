@@ -0,0 +1,80 @@
+package com.exercice.upstreampay.controller.filter;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.management.RequestTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-request timing of the transaction requests: the {@link RequestTimings} of the request are put in the
+ * Reactor context, where the controller, the service and the encoders record their steps, and are returned in a
+ * {@code Server-Timing} header when the response is committed.
+ * <p>
+ * The requests slower than {@code application.timing.slow-threshold} are logged with their steps, sampled with
+ * {@code application.timing.slow-sample-rate}. The event feed is not timed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter implements WebFilter {
+
+    private static final String TRANSACTIONS_PATH = "/api/transactions";
+
+    private static final String EVENTS_PATH = "/api/transactions/events";
+
+    private static final String SERVER_TIMING = "Server-Timing";
+
+    private final Logger log = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private final boolean enabled;
+
+    private final long slowThresholdNanos;
+
+    private final double slowSampleRate;
+
+    public ServerTimingFilter(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Timing properties = applicationProperties.getTiming();
+        this.enabled = properties.isEnabled();
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+        this.slowSampleRate = properties.getSlowSampleRate();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!enabled || !path.startsWith(TRANSACTIONS_PATH) || path.equals(EVENTS_PATH)) {
+            return chain.filter(exchange);
+        }
+        RequestTimings timings = new RequestTimings();
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> Mono.fromRunnable(() -> response.getHeaders().set(SERVER_TIMING, timings.toServerTiming())));
+        return chain
+                .filter(exchange)
+                .contextWrite(context -> context.put(RequestTimings.CONTEXT_KEY, timings))
+                .doFinally(signal -> logIfSlow(exchange, path, timings));
+    }
+
+    private void logIfSlow(ServerWebExchange exchange, String path, RequestTimings timings) {
+        long elapsed = timings.elapsedNanos();
+        if (elapsed < slowThresholdNanos || ThreadLocalRandom.current().nextDouble() >= slowSampleRate) {
+            return;
+        }
+        log.warn(
+                "Slow request method={} path={} status={} duration_ms={} {}",
+                exchange.getRequest().getMethodValue(),
+                path,
+                exchange.getResponse().getRawStatusCode(),
+                elapsed / 1_000_000,
+                timings.toLogFields()
+        );
+    }
+}
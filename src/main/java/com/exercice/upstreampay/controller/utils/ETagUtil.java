@@ -0,0 +1,105 @@
+package com.exercice.upstreampay.controller.utils;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Weak entity tags of the transaction representations.
+ * <p>
+ * The tag of a transaction is its version, which every update increments, followed by a digest of the fieldset
+ * when it is sparse: it can be computed from a version-only read, without loading the transaction. The tag of a
+ * list is a digest of the id and version of each of its transactions, of its fieldset and of its total count.
+ * <p>
+ * The tags are weak since they do not depend on the negotiated media type: the JSON, CBOR and Smile
+ * representations of the same version are equivalent, not byte-for-byte identical. An {@code If-Match} header is
+ * still compared strongly on the version, which identifies a single state of the transaction.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * @param version the version of the transaction.
+     * @param fields  the fieldset of the representation.
+     * @return the weak tag, or {@code null} for a transaction without a version.
+     */
+    public static String transaction(Long version, TransactionFields fields) {
+        if (version == null) {
+            return null;
+        }
+        if (fields.isAll()) {
+            return weak(String.valueOf(version));
+        }
+        return weak(version + "-" + digest(fieldNames(fields)).substring(0, 8));
+    }
+
+    /**
+     * @param transactions the transactions of the page, read with their version.
+     * @param total        the total count of the transactions, which the pagination headers depend on.
+     * @param fields       the fieldset of the representation.
+     * @return the weak tag.
+     */
+    public static String list(List<Transaction> transactions, long total, TransactionFields fields) {
+        StringBuilder content = new StringBuilder().append(total).append('\n').append(fieldNames(fields));
+        transactions.forEach(transaction -> content.append('\n').append(transaction.getId()).append(':').append(transaction.getVersion()));
+        return weak(digest(content.toString()));
+    }
+
+    private static String weak(String opaqueTag) {
+        return "W/\"" + opaqueTag + "\"";
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String fieldNames(TransactionFields fields) {
+        return String.join(",", new TreeSet<>(fields.getNames()));
+    }
+
+    private static String digest(String content) {
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header with a tag.
+     *
+     * @param ifNoneMatch the header.
+     * @param eTag        the tag of the current representation.
+     * @return whether the header lists the tag, or is {@code *}.
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaqueTag(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the version of an {@code If-Match} header, which must be the single tag of a whole transaction, as sent
+     * in any media type. The update then only applies to that exact version.
+     *
+     * @param ifMatch the header.
+     * @return the version, or {@code null} if the header is not such a tag.
+     */
+    public static Long version(String ifMatch) {
+        String tag = opaqueTag(ifMatch.trim());
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
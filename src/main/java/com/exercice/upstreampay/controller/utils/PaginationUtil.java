@@ -4,10 +4,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.Base64;
 
 public final class PaginationUtil {
     private static final String HEADER_X_TOTAL_COUNT = "X-Total-Count";
+    private static final String HEADER_X_NEXT_CURSOR = "X-Next-Cursor";
+    private static final String CURSOR_PARAM = "cursor";
     private static final String HEADER_LINK_FORMAT = "<{0}>; rel=\"{1}\"";
 
     private PaginationUtil() {
@@ -15,7 +19,7 @@ public final class PaginationUtil {
 
     public static <T> HttpHeaders generatePaginationHttpHeaders(UriComponentsBuilder uriBuilder, Page<T> page) {
         HttpHeaders headers = new HttpHeaders();
-        headers.add("X-Total-Count", Long.toString(page.getTotalElements()));
+        headers.add(HEADER_X_TOTAL_COUNT, Long.toString(page.getTotalElements()));
         int pageNumber = page.getNumber();
         int pageSize = page.getSize();
         StringBuilder link = new StringBuilder();
@@ -32,6 +36,66 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * Generate the headers of a keyset page: {@code next} and {@code first} links carrying an opaque cursor,
+     * and the total count only when it has been computed.
+     *
+     * @param uriBuilder the builder of the current request uri.
+     * @param nextCursor the cursor of the following page, or {@code null} on the last page.
+     * @param pageSize   the size of the page.
+     * @param totalCount the total number of elements, or {@code null} when it was not requested.
+     * @return the pagination headers.
+     */
+    public static HttpHeaders generatePaginationHttpHeaders(UriComponentsBuilder uriBuilder, String nextCursor, int pageSize, Long totalCount) {
+        HttpHeaders headers = new HttpHeaders();
+        if (totalCount != null) {
+            headers.add(HEADER_X_TOTAL_COUNT, Long.toString(totalCount));
+        }
+        StringBuilder link = new StringBuilder();
+        if (nextCursor != null) {
+            headers.add(HEADER_X_NEXT_CURSOR, nextCursor);
+            link.append(prepareCursorLink(uriBuilder, nextCursor, pageSize, "next")).append(",");
+        }
+        link.append(prepareCursorLink(uriBuilder, "", pageSize, "first"));
+        headers.add("Link", link.toString());
+        return headers;
+    }
+
+    /**
+     * Encode the sort key of the last element of a page into an opaque cursor.
+     *
+     * @param lastKey the key of the last element.
+     * @return the cursor.
+     */
+    public static String encodeCursor(String lastKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encodeCursor(String)}.
+     *
+     * @param cursor the cursor, blank for the first page.
+     * @return the key of the last element already read, or {@code null} for the first page.
+     * @throws IllegalArgumentException if the cursor is not a valid one.
+     */
+    public static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static String prepareCursorLink(UriComponentsBuilder uriBuilder, String cursor, int pageSize, String relType) {
+        String uri = uriBuilder
+                .replaceQueryParam("page")
+                .replaceQueryParam(CURSOR_PARAM, cursor)
+                .replaceQueryParam("size", Integer.toString(pageSize))
+                .toUriString()
+                .replace(",", "%2C")
+                .replace(";", "%3B");
+        return MessageFormat.format(HEADER_LINK_FORMAT, uri, relType);
+    }
+
     private static String prepareLink(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize, String relType) {
         return MessageFormat.format("<{0}>; rel=\"{1}\"", preparePageUri(uriBuilder, pageNumber, pageSize), relType);
     }
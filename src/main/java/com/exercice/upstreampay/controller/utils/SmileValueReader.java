@@ -0,0 +1,115 @@
+package com.exercice.upstreampay.controller.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split of a stream of concatenated Smile values into the tokens of each value, as the buffers arrive.
+ * <p>
+ * Unlike the Smile decoder, which parses a whole buffer before emitting its values, every value completed before
+ * an invalid one is emitted before the error.
+ */
+public final class SmileValueReader {
+
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    private final JsonParser parser;
+
+    private TokenBuffer value;
+
+    private boolean ended;
+
+    private int depth;
+
+    private SmileValueReader() throws IOException {
+        this.parser = SMILE_FACTORY.createNonBlockingByteArrayParser();
+    }
+
+    /**
+     * @param body the buffers of the stream, which are released.
+     * @return the tokens of each value, then an {@link IOException} if the stream is not valid Smile.
+     */
+    public static Flux<TokenBuffer> read(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            SmileValueReader reader;
+            try {
+                reader = new SmileValueReader();
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+            return body
+                    .concatMap(buffer -> {
+                        List<TokenBuffer> values = new ArrayList<>();
+                        try {
+                            byte[] bytes = new byte[buffer.readableByteCount()];
+                            buffer.read(bytes);
+                            reader.feed(bytes, values);
+                        } catch (IOException e) {
+                            return Flux.fromIterable(values).concatWith(Flux.error(e));
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                        return Flux.fromIterable(values);
+                    })
+                    .concatWith(Flux.defer(() -> {
+                        List<TokenBuffer> values = new ArrayList<>();
+                        try {
+                            reader.end(values);
+                        } catch (IOException e) {
+                            return Flux.fromIterable(values).concatWith(Flux.error(e));
+                        }
+                        return Flux.fromIterable(values);
+                    }));
+        });
+    }
+
+    private void feed(byte[] bytes, List<TokenBuffer> values) throws IOException {
+        ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+        readAvailable(values);
+    }
+
+    private void end(List<TokenBuffer> values) throws IOException {
+        ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+        ended = true;
+        readAvailable(values);
+        if (value != null) {
+            throw new IOException("Unexpected end of the Smile stream");
+        }
+    }
+
+    private void readAvailable(List<TokenBuffer> values) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+            if (token == null) {
+                // the end of the input, or a Smile header starting the next value
+                if (ended) {
+                    return;
+                }
+                continue;
+            }
+            if (value == null) {
+                value = new TokenBuffer(parser);
+            }
+            value.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                values.add(value);
+                value = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.exercice.upstreampay.controller.vm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+
+/**
+ * View Model holding the outcome of one line of a batch request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultVM implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Outcome {
+        CREATED,
+        REJECTED,
+    }
+
+    private final long index;
+
+    private final Outcome outcome;
+
+    private final String id;
+
+    private final String errorKey;
+
+    private final String message;
+
+    private BatchItemResultVM(long index, Outcome outcome, String id, String errorKey, String message) {
+        this.index = index;
+        this.outcome = outcome;
+        this.id = id;
+        this.errorKey = errorKey;
+        this.message = message;
+    }
+
+    public static BatchItemResultVM created(long index, String id) {
+        return new BatchItemResultVM(index, Outcome.CREATED, id, null, null);
+    }
+
+    public static BatchItemResultVM rejected(long index, String errorKey, String message) {
+        return new BatchItemResultVM(index, Outcome.REJECTED, null, errorKey, message);
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getErrorKey() {
+        return errorKey;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,20 @@
+package com.exercice.upstreampay.controller.vm;
+
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * View Model of a bulk transition request: the new status, and either the ids of the transactions or a filter.
+ */
+@Data
+public class BulkTransitionVM {
+
+    private Status status;
+
+    private List<String> ids;
+
+    private TransactionCriteria filter;
+}
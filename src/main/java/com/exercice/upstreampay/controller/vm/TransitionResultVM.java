@@ -0,0 +1,109 @@
+package com.exercice.upstreampay.controller.vm;
+
+import com.exercice.upstreampay.controller.error.ErrorConstants;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.storage.TransitionOutcome;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+
+/**
+ * View Model holding the outcome of one transaction of a bulk transition.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransitionResultVM implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+
+    private final TransitionOutcome.Result outcome;
+
+    private final Status status;
+
+    private final Long version;
+
+    private final String errorKey;
+
+    private final String message;
+
+    private TransitionResultVM(String id, TransitionOutcome.Result outcome, Status status, Long version, String errorKey, String message) {
+        this.id = id;
+        this.outcome = outcome;
+        this.status = status;
+        this.version = version;
+        this.errorKey = errorKey;
+        this.message = message;
+    }
+
+    /**
+     * @param outcome the outcome of the transition.
+     * @param status  the status the transaction was to be moved to.
+     * @return the result, with the status and version of the transaction when they are known.
+     */
+    public static TransitionResultVM of(TransitionOutcome outcome, Status status) {
+        Transaction current = outcome.getUpdated() != null ? outcome.getUpdated() : outcome.getPrevious();
+        Status currentStatus = current == null ? null : current.getStatus();
+        Long version = current == null ? null : current.getVersion();
+        switch (outcome.getResult()) {
+            case UPDATED:
+                return new TransitionResultVM(outcome.getId(), outcome.getResult(), currentStatus, version, null, null);
+            case NOT_FOUND:
+                return new TransitionResultVM(outcome.getId(), outcome.getResult(), null, null, "idnotfound", "Entity not found");
+            case NOT_ALLOWED:
+                return new TransitionResultVM(
+                        outcome.getId(),
+                        outcome.getResult(),
+                        currentStatus,
+                        version,
+                        "error.transaction.update",
+                        "The status " + currentStatus + " cannot be modified as " + status
+                );
+            case CONFLICT:
+                return new TransitionResultVM(
+                        outcome.getId(),
+                        outcome.getResult(),
+                        null,
+                        null,
+                        ErrorConstants.ERR_CONCURRENCY_FAILURE,
+                        "The transaction was modified concurrently"
+                );
+            case REJECTED:
+                return new TransitionResultVM(
+                        outcome.getId(),
+                        outcome.getResult(),
+                        null,
+                        null,
+                        "transitionrejected",
+                        "Too many concurrent writes, the transaction may be moved again later"
+                );
+            default:
+                return new TransitionResultVM(outcome.getId(), outcome.getResult(), null, null, "transitionfailed", "The transaction could not be updated");
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public TransitionOutcome.Result getOutcome() {
+        return outcome;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getErrorKey() {
+        return errorKey;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,32 @@
+package com.exercice.upstreampay.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Outcome of a request made with an {@code Idempotency-Key} header. The key is the id, so that two requests
+ * with the same key cannot both be recorded.
+ */
+@Document(collection = "idempotency_keys")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    public enum State {
+        PENDING,
+        COMPLETED,
+    }
+
+    @Id
+    private String key;
+    private String requestHash;
+    private State state;
+    private String transactionId;
+    private Instant createdAt;
+}
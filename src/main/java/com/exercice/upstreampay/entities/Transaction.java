@@ -2,17 +2,26 @@ package com.exercice.upstreampay.entities;
 
 import com.exercice.upstreampay.entities.enumerations.PaymentType;
 import com.exercice.upstreampay.entities.enumerations.Status;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
 import java.util.List;
 
 @Document
 @Data
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @ToString
@@ -24,6 +33,22 @@ public class Transaction {
     private PaymentType type;
     private Status status;
     private List<OrderLine> orders;
+    @JsonIgnore
+    private String ordersFingerprint;
+    // the audit fields are empty on the transactions inserted before them: omit them rather than adding nulls
+    @CreatedDate
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant createdAt;
+    @LastModifiedDate
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant updatedAt;
+    // only the If-Match header conditions an update on the version
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 
 
 }
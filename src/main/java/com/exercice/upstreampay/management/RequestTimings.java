@@ -0,0 +1,136 @@
+package com.exercice.upstreampay.management;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Timing spans of a single request, carried in the Reactor context under {@link #CONTEXT_KEY}.
+ * <p>
+ * A span is the time from the subscription to a step until its value, for a {@link Mono}, or its termination.
+ * The spans of the same name are summed, so that a request repeating a step many times keeps a bounded breakdown.
+ * Outside of a request, or when the timings are disabled, the steps are left as they are.
+ */
+public final class RequestTimings {
+
+    public static final String CONTEXT_KEY = RequestTimings.class.getName();
+
+    private final long start = System.nanoTime();
+
+    // name -> { total nanoseconds, count }
+    private final Map<String, long[]> spans = new LinkedHashMap<>();
+
+    /**
+     * Time a step of the current request.
+     *
+     * @param name the name of the span, a token of the {@code Server-Timing} header.
+     * @param step the step.
+     * @return the timed step.
+     */
+    public static <T> Mono<T> span(String name, Mono<T> step) {
+        return Mono.deferContextual(context -> {
+            if (!context.hasKey(CONTEXT_KEY)) {
+                return step;
+            }
+            Span span = context.<RequestTimings>get(CONTEXT_KEY).start(name);
+            // the value ends the step: the downstream work, up to the write of the response, runs within its signal
+            return step.doOnEach(signal -> span.end()).doOnCancel(span::end);
+        });
+    }
+
+    /**
+     * Time a step of the current request.
+     *
+     * @param name the name of the span, a token of the {@code Server-Timing} header.
+     * @param step the step.
+     * @return the timed step.
+     */
+    public static <T> Flux<T> span(String name, Flux<T> step) {
+        return Flux.deferContextual(context -> {
+            if (!context.hasKey(CONTEXT_KEY)) {
+                return step;
+            }
+            Span span = context.<RequestTimings>get(CONTEXT_KEY).start(name);
+            return step.doOnTerminate(span::end).doOnCancel(span::end);
+        });
+    }
+
+    /**
+     * Time a synchronous step of the current request.
+     *
+     * @param name the name of the span.
+     * @param step the step, run on subscription.
+     * @return the timed step.
+     */
+    public static Mono<Void> run(String name, Runnable step) {
+        return span(name, Mono.fromRunnable(step));
+    }
+
+    private Span start(String name) {
+        return new Span(name, System.nanoTime());
+    }
+
+    public synchronized void record(String name, long nanos) {
+        long[] span = spans.computeIfAbsent(name, key -> new long[2]);
+        span[0] += nanos;
+        span[1]++;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return the spans recorded so far and the total, as a {@code Server-Timing} header value.
+     */
+    public synchronized String toServerTiming() {
+        StringJoiner header = new StringJoiner(", ");
+        spans.forEach((name, span) -> {
+            String metric = name + ";dur=" + millis(span[0]);
+            header.add(span[1] > 1 ? metric + ";desc=\"" + span[1] + " calls\"" : metric);
+        });
+        header.add("total;dur=" + millis(elapsedNanos()));
+        return header.toString();
+    }
+
+    /**
+     * @return the spans recorded so far, as {@code name=milliseconds} pairs.
+     */
+    public synchronized String toLogFields() {
+        StringJoiner fields = new StringJoiner(" ");
+        spans.forEach((name, span) -> fields.add(name + "=" + millis(span[0]) + (span[1] > 1 ? "x" + span[1] : "")));
+        return fields.toString();
+    }
+
+    /**
+     * A started step, recorded once at its first end.
+     */
+    private final class Span {
+
+        private final String name;
+
+        private final long start;
+
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private Span(String name, long start) {
+            this.name = name;
+            this.start = start;
+        }
+
+        private void end() {
+            if (ended.compareAndSet(false, true)) {
+                record(name, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+}
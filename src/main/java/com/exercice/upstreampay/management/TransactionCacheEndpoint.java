@@ -0,0 +1,37 @@
+package com.exercice.upstreampay.management;
+
+import com.exercice.upstreampay.service.cache.TransactionCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing the counters of the {@link TransactionCache}.
+ */
+@Component
+@Endpoint(id = "transactioncache")
+public class TransactionCacheEndpoint {
+
+    private final TransactionCache transactionCache;
+
+    public TransactionCacheEndpoint(TransactionCache transactionCache) {
+        this.transactionCache = transactionCache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        CacheStats stats = transactionCache.stats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", transactionCache.isEnabled());
+        body.put("size", transactionCache.size());
+        body.put("hits", stats.hitCount());
+        body.put("misses", stats.missCount());
+        body.put("evictions", stats.evictionCount());
+        body.put("hitRate", stats.hitRate());
+        return body;
+    }
+}
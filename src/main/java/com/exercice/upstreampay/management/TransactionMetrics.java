@@ -0,0 +1,111 @@
+package com.exercice.upstreampay.management;
+
+import com.exercice.upstreampay.entities.enumerations.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Micrometer meters of the transaction service: a timer per service method,
+ * counters of status transitions and of rejected requests by error key,
+ * and the size of the coalesced inserts.
+ */
+@Component
+public class TransactionMetrics {
+
+    private static final String SERVICE_TIMER = "transaction.service";
+    private static final String TRANSITIONS_COUNTER = "transaction.status.transitions";
+    private static final String REJECTIONS_COUNTER = "transaction.rejections";
+    private static final String COALESCED_SUMMARY = "transaction.insert.coalesced";
+
+    private final MeterRegistry registry;
+
+    public TransactionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Time a service call from subscription to termination.
+     *
+     * @param method the name of the service method.
+     * @param mono   the call to time.
+     * @return the timed call.
+     */
+    public <T> Mono<T> time(String method, Mono<T> mono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return mono.doFinally(signal -> sample.stop(timer(method, signal)));
+        });
+    }
+
+    /**
+     * Time a service call from subscription to termination.
+     *
+     * @param method the name of the service method.
+     * @param flux   the call to time.
+     * @return the timed call.
+     */
+    public <T> Flux<T> time(String method, Flux<T> flux) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return flux.doFinally(signal -> sample.stop(timer(method, signal)));
+        });
+    }
+
+    /**
+     * Count a status change of a transaction: neither a creation nor a write leaving the status unchanged is one.
+     *
+     * @param previousStatus the status before the write, or {@code null} for a creation.
+     * @param status         the status after the write.
+     */
+    public void transitioned(Status previousStatus, Status status) {
+        if (previousStatus == null || previousStatus == status) {
+            return;
+        }
+        Counter.builder(TRANSITIONS_COUNTER)
+                .description("Transactions moving to a status")
+                .tag("status", status.name())
+                .register(registry)
+                .increment();
+    }
+
+    public void rejected(String errorKey) {
+        Counter.builder(REJECTIONS_COUNTER)
+                .description("Requests rejected by error key")
+                .tag("error_key", String.valueOf(errorKey))
+                .register(registry)
+                .increment();
+    }
+
+    public void coalesced(int batchSize) {
+        DistributionSummary.builder(COALESCED_SUMMARY)
+                .description("Transactions written by a coalesced insert")
+                .register(registry)
+                .record(batchSize);
+    }
+
+    private Timer timer(String method, SignalType signal) {
+        return Timer.builder(SERVICE_TIMER)
+                .description("Time spent in the transaction service")
+                .tag("method", method)
+                .tag("outcome", outcome(signal))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static String outcome(SignalType signal) {
+        switch (signal) {
+            case ON_COMPLETE:
+                return "success";
+            case ON_ERROR:
+                return "error";
+            default:
+                return "cancelled";
+        }
+    }
+}
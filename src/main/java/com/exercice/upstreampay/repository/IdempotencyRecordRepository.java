@@ -0,0 +1,9 @@
+package com.exercice.upstreampay.repository;
+
+import com.exercice.upstreampay.entities.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdempotencyRecordRepository extends ReactiveMongoRepository<IdempotencyRecord, String> {
+}
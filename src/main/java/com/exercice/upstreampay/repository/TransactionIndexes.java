@@ -0,0 +1,102 @@
+package com.exercice.upstreampay.repository;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compound indexes of the transaction collection, created and verified at startup.
+ * <p>
+ * Each index lists the equality fields first and then the range field, so that a query is bounded by an index
+ * when its equality filters are the prefix of that index, followed by one of its range filters if it has any.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.storage", name = "backend", havingValue = "mongo", matchIfMissing = true)
+public class TransactionIndexes {
+
+    private static final Map<String, List<String>> INDEXES = new LinkedHashMap<>();
+
+    static {
+        INDEXES.put("status_type_createdAt", List.of("status", "type", "createdAt"));
+        INDEXES.put("status_createdAt", List.of("status", "createdAt"));
+        INDEXES.put("type_createdAt", List.of("type", "createdAt"));
+        INDEXES.put("createdAt", List.of("createdAt"));
+        INDEXES.put("status_type_price", List.of("status", "type", "price"));
+        // the selection of the transactions to archive
+        INDEXES.put("status_updatedAt", List.of("status", "updatedAt"));
+    }
+
+    private final Logger log = LoggerFactory.getLogger(TransactionIndexes.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public TransactionIndexes(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        Flux
+                .fromIterable(INDEXES.entrySet())
+                .concatMap(index -> {
+                    Index definition = new Index().named(index.getKey()).background();
+                    index.getValue().forEach(field -> definition.on(field, Sort.Direction.ASC));
+                    return mongoTemplate.indexOps(Transaction.class).ensureIndex(definition);
+                })
+                .thenMany(mongoTemplate.indexOps(Transaction.class).getIndexInfo())
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet())
+                .subscribe(
+                        existing -> INDEXES.keySet().stream()
+                                .filter(name -> !existing.contains(name))
+                                .forEach(name -> log.warn("Transaction index {} is missing", name)),
+                        e -> log.warn("Could not create the transaction indexes: {}", e.getMessage())
+                );
+    }
+
+    /**
+     * Tell whether the filters of a query are bounded by one of the indexes.
+     *
+     * @param criteria the filters.
+     * @return whether an index covers the filters.
+     */
+    public boolean covers(TransactionCriteria criteria) {
+        Set<String> equalities = new HashSet<>();
+        if (criteria.getStatus() != null) {
+            equalities.add("status");
+        }
+        if (criteria.getType() != null) {
+            equalities.add("type");
+        }
+        Set<String> ranges = new HashSet<>();
+        if (criteria.getCreatedFrom() != null || criteria.getCreatedTo() != null) {
+            ranges.add("createdAt");
+        }
+        if (criteria.getMinPrice() != null || criteria.getMaxPrice() != null) {
+            ranges.add("price");
+        }
+        return INDEXES.values().stream().anyMatch(fields -> {
+            if (fields.size() < equalities.size() || !new HashSet<>(fields.subList(0, equalities.size())).equals(equalities)) {
+                return false;
+            }
+            return ranges.isEmpty() || (fields.size() > equalities.size() && ranges.contains(fields.get(equalities.size())));
+        });
+    }
+}
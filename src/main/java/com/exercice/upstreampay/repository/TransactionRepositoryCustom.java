@@ -0,0 +1,117 @@
+package com.exercice.upstreampay.repository;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.storage.TransitionOutcome;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom operations of the {@link TransactionRepository} that cannot be expressed as derived queries.
+ */
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Stream the transactions straight from a Mongo cursor, ordered by id.
+     *
+     * @param status    the status to filter on, or {@code null}.
+     * @param type      the payment type to filter on, or {@code null}.
+     * @param batchSize the number of documents fetched by each round trip of the cursor.
+     * @param fields    the fields projected by the query.
+     * @return the entities, emitted as they are requested downstream.
+     */
+    Flux<Transaction> streamAll(Status status, PaymentType type, int batchSize, TransactionFields fields);
+
+    /**
+     * Get a transaction, projecting only the fields of a fieldset.
+     *
+     * @param id     the id of the entity.
+     * @param fields the fields projected by the query.
+     * @return the entity, with the other fields left empty.
+     */
+    Mono<Transaction> findById(String id, TransactionFields fields);
+
+    /**
+     * Get the transactions following an id, ordered by id.
+     *
+     * @param lastId the last id already read, or {@code null} to start from the first transaction.
+     * @param size   the number of transactions.
+     * @param fields the fields projected by the query.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields);
+
+    /**
+     * Apply an update in a single conditional round trip. The update only matches if the stored transaction
+     * has one of the given statuses, the same order lines fingerprint, and the same version when one is given.
+     * A transaction stored without a fingerprint is read first, so that its order lines are compared as a multiset.
+     *
+     * @param transaction  the new state of the transaction.
+     * @param fromStatuses   the statuses the stored transaction may have.
+     * @return the entity as it was before and after the update, or empty if no stored transaction matched.
+     */
+    Mono<Tuple2<Transaction, Transaction>> updateIfTransitionAllowed(Transaction transaction, Collection<Status> fromStatuses);
+
+    /**
+     * Move transactions to a status: they are read in one query, then the allowed transitions are written with
+     * one unordered bulk write, each update being conditioned on the status and version that were read.
+     *
+     * @param ids          the distinct ids of the transactions.
+     * @param status       the new status.
+     * @param fromStatuses the statuses the stored transactions may have.
+     * @return the outcome of each id.
+     */
+    Flux<TransitionOutcome> transitionAll(List<String> ids, Status status, Collection<Status> fromStatuses);
+
+    /**
+     * Delete transactions with one unordered bulk write, each delete being conditioned on the version that was read.
+     *
+     * @param transactions the transactions, as they were read.
+     * @return the ids of the deleted transactions.
+     */
+    Flux<String> deleteAllUnchanged(List<Transaction> transactions);
+
+    /**
+     * Get the transactions of a status which were last updated before a date, the oldest first.
+     *
+     * @param status        the status.
+     * @param updatedBefore the exclusive bound of the last update date.
+     * @param size          the maximum number of transactions.
+     * @return the entities.
+     */
+    Flux<Transaction> findAllUpdatedBefore(Status status, Instant updatedBefore, int size);
+
+    /**
+     * Count the transactions from the collection metadata, without scanning it.
+     *
+     * @return the estimated number of entities.
+     */
+    Mono<Long> estimatedCount();
+
+    /**
+     * Get a page of the transactions matching the filters.
+     *
+     * @param criteria the filters.
+     * @param pageable the pagination information.
+     * @param fields   the fields projected by the query.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAllBy(TransactionCriteria criteria, Pageable pageable, TransactionFields fields);
+
+    /**
+     * Count the transactions matching the filters.
+     *
+     * @param criteria the filters.
+     * @return the number of entities.
+     */
+    Mono<Long> countBy(TransactionCriteria criteria);
+}
@@ -0,0 +1,315 @@
+package com.exercice.upstreampay.repository;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.service.util.OrderLines;
+import com.exercice.upstreampay.storage.TransitionOutcome;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public TransactionRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<Transaction> streamAll(Status status, PaymentType type, int batchSize, TransactionFields fields) {
+        Query query = project(new Query(), fields).with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(batchSize);
+        if (status != null) {
+            query.addCriteria(Criteria.where("status").is(status));
+        }
+        if (type != null) {
+            query.addCriteria(Criteria.where("type").is(type));
+        }
+        return mongoTemplate.find(query, Transaction.class);
+    }
+
+    @Override
+    public Mono<Transaction> findById(String id, TransactionFields fields) {
+        return mongoTemplate.findOne(project(new Query(Criteria.where("id").is(id)), fields), Transaction.class);
+    }
+
+    @Override
+    public Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields) {
+        Query query = project(new Query(), fields).with(Sort.by(Sort.Direction.ASC, "id")).limit(size);
+        if (lastId != null) {
+            query.addCriteria(Criteria.where("id").gt(lastId));
+        }
+        return mongoTemplate.find(query, Transaction.class);
+    }
+
+    @Override
+    public Mono<Tuple2<Transaction, Transaction>> updateIfTransitionAllowed(Transaction transaction, Collection<Status> fromStatuses) {
+        List<OrderLine> orders = transaction.getOrders() == null ? List.of() : transaction.getOrders();
+        Criteria criteria = Criteria
+                .where("id").is(transaction.getId())
+                .and("status").in(fromStatuses)
+                .and("ordersFingerprint").is(transaction.getOrdersFingerprint());
+        if (transaction.getVersion() != null) {
+            criteria.and("version").is(transaction.getVersion());
+        }
+        return modify(criteria, transaction, orders)
+                .switchIfEmpty(Mono.defer(() -> updateUnfingerprinted(transaction, orders, fromStatuses)));
+    }
+
+    /**
+     * Transactions saved before fingerprints existed are read, their order lines compared with
+     * {@link OrderLines#sameLines}, then updated on the condition that they were not modified since the read.
+     * Every update sets the fingerprint, so this only happens once per transaction.
+     */
+    private Mono<Tuple2<Transaction, Transaction>> updateUnfingerprinted(Transaction transaction, List<OrderLine> orders, Collection<Status> fromStatuses) {
+        Criteria unfingerprinted = Criteria.where("id").is(transaction.getId()).and("ordersFingerprint").exists(false);
+        return mongoTemplate
+                .findOne(new Query(unfingerprinted), Transaction.class)
+                .filter(stored -> fromStatuses.contains(stored.getStatus())
+                        && (transaction.getVersion() == null || transaction.getVersion().equals(stored.getVersion()))
+                        && OrderLines.sameLines(stored.getOrders() == null ? List.of() : stored.getOrders(), orders))
+                .flatMap(stored -> modify(
+                        Criteria.where("id").is(transaction.getId())
+                                .and("ordersFingerprint").exists(false)
+                                .and("status").is(stored.getStatus())
+                                .and("version").is(stored.getVersion()),
+                        transaction,
+                        orders
+                ));
+    }
+
+    private Mono<Tuple2<Transaction, Transaction>> modify(Criteria criteria, Transaction transaction, List<OrderLine> orders) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("price", transaction.getPrice())
+                .set("type", transaction.getType())
+                .set("status", transaction.getStatus())
+                .set("orders", orders)
+                .set("ordersFingerprint", transaction.getOrdersFingerprint())
+                .set("updatedAt", now)
+                .inc("version", 1);
+        // the previous state is returned so that callers can tell what changed, the new one is derived from the update
+        return mongoTemplate
+                .findAndModify(new Query(criteria), update, FindAndModifyOptions.options().returnNew(false), Transaction.class)
+                .map(previous -> Tuples.of(
+                        previous,
+                        previous
+                                .toBuilder()
+                                .price(transaction.getPrice())
+                                .type(transaction.getType())
+                                .status(transaction.getStatus())
+                                .orders(orders)
+                                .ordersFingerprint(transaction.getOrdersFingerprint())
+                                .updatedAt(now)
+                                .version(previous.getVersion() == null ? 1 : previous.getVersion() + 1)
+                                .build()
+                ));
+    }
+
+    @Override
+    public Flux<TransitionOutcome> transitionAll(List<String> ids, Status status, Collection<Status> fromStatuses) {
+        return mongoTemplate
+                .find(new Query(Criteria.where("id").in(ids)), Transaction.class)
+                .collectMap(Transaction::getId)
+                .flatMapMany(found -> {
+                    List<TransitionOutcome> outcomes = new ArrayList<>(ids.size());
+                    List<Transaction> allowed = new ArrayList<>(found.size());
+                    for (String id : ids) {
+                        Transaction previous = found.get(id);
+                        if (previous == null) {
+                            outcomes.add(TransitionOutcome.notFound(id));
+                        } else if (!fromStatuses.contains(previous.getStatus())) {
+                            outcomes.add(TransitionOutcome.notAllowed(previous));
+                        } else {
+                            allowed.add(previous);
+                        }
+                    }
+                    if (allowed.isEmpty()) {
+                        return Flux.fromIterable(outcomes);
+                    }
+                    // the dates are stored to the millisecond: truncate so that the update can be recognized
+                    Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+                    return bulkTransition(allowed, status, now)
+                            .flatMapMany(result -> result.getMatchedCount() == allowed.size()
+                                    ? Flux.fromIterable(allowed).map(previous -> TransitionOutcome.updated(previous, transitioned(previous, status, now)))
+                                    // some transactions were modified meanwhile: tell which ones by reading them again
+                                    : recognizeTransitions(allowed, status, now))
+                            .concatWith(Flux.fromIterable(outcomes));
+                });
+    }
+
+    private Mono<BulkWriteResult> bulkTransition(List<Transaction> transactions, Status status, Instant now) {
+        MongoConverter converter = mongoTemplate.getConverter();
+        List<WriteModel<Document>> updates = new ArrayList<>(transactions.size());
+        for (Transaction previous : transactions) {
+            Document filter = new Document("_id", converter.convertId(previous.getId(), ObjectId.class))
+                    .append("status", previous.getStatus().name())
+                    .append("version", previous.getVersion());
+            Document update = new Document("$set", new Document("status", status.name()).append("updatedAt", Date.from(now)))
+                    .append("$inc", new Document("version", 1));
+            updates.add(new UpdateOneModel<>(filter, update));
+        }
+        return mongoTemplate
+                .getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(updates, new BulkWriteOptions().ordered(false))));
+    }
+
+    private Flux<TransitionOutcome> recognizeTransitions(List<Transaction> transactions, Status status, Instant now) {
+        Map<String, Transaction> previousById = new LinkedHashMap<>();
+        transactions.forEach(previous -> previousById.put(previous.getId(), previous));
+        Query query = new Query(Criteria.where("id").in(previousById.keySet()));
+        query.fields().include("status").include("updatedAt").include("version");
+        return mongoTemplate
+                .find(query, Transaction.class)
+                .collectMap(Transaction::getId)
+                .flatMapIterable(current -> {
+                    List<TransitionOutcome> outcomes = new ArrayList<>(previousById.size());
+                    previousById.forEach((id, previous) -> {
+                        Transaction transaction = current.get(id);
+                        Transaction updated = transitioned(previous, status, now);
+                        boolean isUpdate = transaction != null
+                                && transaction.getStatus() == status
+                                && now.equals(transaction.getUpdatedAt())
+                                && Objects.equals(updated.getVersion(), transaction.getVersion());
+                        outcomes.add(isUpdate ? TransitionOutcome.updated(previous, updated) : TransitionOutcome.conflict(previous));
+                    });
+                    return outcomes;
+                });
+    }
+
+    private static Transaction transitioned(Transaction previous, Status status, Instant now) {
+        return previous
+                .toBuilder()
+                .status(status)
+                .updatedAt(now)
+                .version(previous.getVersion() == null ? 1 : previous.getVersion() + 1)
+                .build();
+    }
+
+    @Override
+    public Flux<String> deleteAllUnchanged(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Flux.empty();
+        }
+        MongoConverter converter = mongoTemplate.getConverter();
+        List<WriteModel<Document>> deletes = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            Document filter = new Document("_id", converter.convertId(transaction.getId(), ObjectId.class))
+                    .append("version", transaction.getVersion());
+            deletes.add(new DeleteOneModel<>(filter));
+        }
+        List<String> ids = transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+        return mongoTemplate
+                .getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(deletes, new BulkWriteOptions().ordered(false))))
+                .flatMapMany(result -> result.getDeletedCount() == ids.size()
+                        ? Flux.fromIterable(ids)
+                        // some transactions were modified meanwhile: tell which ones are gone by reading them again
+                        : recognizeDeletes(ids));
+    }
+
+    private Flux<String> recognizeDeletes(List<String> ids) {
+        Query query = new Query(Criteria.where("id").in(ids));
+        query.fields().include("id");
+        return mongoTemplate
+                .find(query, Transaction.class)
+                .map(Transaction::getId)
+                .collect(Collectors.toSet())
+                .flatMapIterable(remaining -> ids.stream().filter(id -> !remaining.contains(id)).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Flux<Transaction> findAllUpdatedBefore(Status status, Instant updatedBefore, int size) {
+        Query query = new Query(Criteria.where("status").is(status).and("updatedAt").lt(updatedBefore))
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+                .limit(size);
+        return mongoTemplate.find(query, Transaction.class);
+    }
+
+    @Override
+    public Flux<Transaction> findAllBy(TransactionCriteria criteria, Pageable pageable, TransactionFields fields) {
+        return mongoTemplate.find(project(toQuery(criteria), fields).with(pageable), Transaction.class);
+    }
+
+    @Override
+    public Mono<Long> countBy(TransactionCriteria criteria) {
+        return mongoTemplate.count(toQuery(criteria), Transaction.class);
+    }
+
+    private static Query toQuery(TransactionCriteria criteria) {
+        Query query = new Query();
+        if (criteria.getStatus() != null) {
+            query.addCriteria(Criteria.where("status").is(criteria.getStatus()));
+        }
+        if (criteria.getType() != null) {
+            query.addCriteria(Criteria.where("type").is(criteria.getType()));
+        }
+        if (criteria.getCreatedFrom() != null || criteria.getCreatedTo() != null) {
+            Criteria createdAt = Criteria.where("createdAt");
+            if (criteria.getCreatedFrom() != null) {
+                createdAt.gte(criteria.getCreatedFrom());
+            }
+            if (criteria.getCreatedTo() != null) {
+                createdAt.lt(criteria.getCreatedTo());
+            }
+            query.addCriteria(createdAt);
+        }
+        if (criteria.getMinPrice() != null || criteria.getMaxPrice() != null) {
+            Criteria price = Criteria.where("price");
+            if (criteria.getMinPrice() != null) {
+                price.gte(criteria.getMinPrice());
+            }
+            if (criteria.getMaxPrice() != null) {
+                price.lte(criteria.getMaxPrice());
+            }
+            query.addCriteria(price);
+        }
+        return query;
+    }
+
+    /**
+     * Leave the fields out of the fieldset in the database: they are neither sent by the server nor mapped.
+     */
+    private static Query project(Query query, TransactionFields fields) {
+        if (!fields.isAll()) {
+            fields.getNames().forEach(query.fields()::include);
+        }
+        return query;
+    }
+
+    @Override
+    public Mono<Long> estimatedCount() {
+        return mongoTemplate.estimatedCount(Transaction.class);
+    }
+}
@@ -1,10 +1,19 @@
 package com.exercice.upstreampay.service;
 
 import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.service.limit.ConcurrencyLimitExceededException;
+import com.exercice.upstreampay.storage.InsertOutcome;
+import com.exercice.upstreampay.storage.TransitionOutcome;
 import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface TransactionService {
 
     /**
@@ -15,6 +24,15 @@ public interface TransactionService {
      */
     Mono<Transaction> save(Transaction transaction);
 
+    /**
+     * Insert a chunk of new transactions with a single bulk write. A failed bulk write only fails the
+     * transactions which cannot be inserted on their own.
+     *
+     * @param transactions the entities to insert, all with a NEW status.
+     * @return the outcome of each entity, in the order they were given; an error if the outcomes are unknown.
+     */
+    Flux<InsertOutcome> saveAll(List<Transaction> transactions);
+
     /**
      * Updates a transaction.
      *
@@ -23,22 +41,83 @@ public interface TransactionService {
      */
     Mono<Transaction> update(Transaction transaction);
 
+    /**
+     * Move transactions to a status, by chunks of {@code application.batch.chunk-size} transactions written with
+     * a single bulk write each. The transitions follow the same rules as {@link #update(Transaction)}.
+     *
+     * @param ids    the ids of the transactions; a repeated id is only moved once.
+     * @param status the new status.
+     * @return the outcome of each id, as the chunks complete; a {@link ConcurrencyLimitExceededException} if a
+     * chunk gets no write slot before the first outcome, and {@code REJECTED} outcomes if it happens later.
+     */
+    Flux<TransitionOutcome> transitionAll(Flux<String> ids, Status status);
+
+    /**
+     * Move the transactions matching filters to a status, reading their ids as the chunks are written.
+     *
+     * @param criteria the filters.
+     * @param status   the new status.
+     * @return the outcome of each matching transaction, as the chunks complete.
+     */
+    Flux<TransitionOutcome> transitionAll(TransactionCriteria criteria, Status status);
+
     /**
      * Get all the transactions.
      *
      * @param pageable the pagination information.
+     * @param fields   the fields to read.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAll(Pageable pageable, TransactionFields fields);
+
+    /**
+     * Get the transactions matching the filters.
+     *
+     * @param criteria the filters.
+     * @param pageable the pagination information.
+     * @param fields   the fields to read.
      * @return the list of entities.
      */
-    Flux<Transaction> findAll(Pageable pageable);
+    Flux<Transaction> findAll(TransactionCriteria criteria, Pageable pageable, TransactionFields fields);
+
+    /**
+     * Get a slice of the transactions ordered by id, seeking past the given id instead of skipping documents.
+     *
+     * @param lastId the id of the last transaction already read, or {@code null} to start from the beginning.
+     * @param size   the maximum number of entities to return.
+     * @param fields the fields to read.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields);
+
+    /**
+     * Stream all the transactions matching the optional filters, without buffering them.
+     *
+     * @param status   the status to filter on, or {@code null}.
+     * @param type     the payment type to filter on, or {@code null}.
+     * @param fields   the fields to read.
+     * @param archived whether the archived transactions follow the ones of the store.
+     * @return the entities, read from the database cursor and from the archive segments as they are requested.
+     */
+    Flux<Transaction> streamAll(Status status, PaymentType type, TransactionFields fields, boolean archived);
 
     /**
-     * Get the "id" transaction.
+     * Get the "id" transaction, from the database or else from the archive.
      *
      * @param id the id of the entity.
      * @return the entity.
      */
     Mono<Transaction> findOne(String id);
 
+    /**
+     * Get the "id" transaction, reading only the fields of a fieldset.
+     *
+     * @param id     the id of the entity.
+     * @param fields the fields to read.
+     * @return the entity, with the other fields left empty.
+     */
+    Mono<Transaction> findOne(String id, TransactionFields fields);
+
     /**
      * check if transaction exists by id
      *
@@ -50,7 +129,15 @@ public interface TransactionService {
     /**
      * Returns the number of transactions available.
      *
-     * @return the number of entities in the database.
+     * @return the number of entities in the database and in the archive.
      */
     Mono<Long> countAll();
+
+    /**
+     * Returns the number of transactions matching the filters.
+     *
+     * @param criteria the filters.
+     * @return the number of matching entities in the database.
+     */
+    Mono<Long> count(TransactionCriteria criteria);
 }
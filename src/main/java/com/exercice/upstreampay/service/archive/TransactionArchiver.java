@@ -0,0 +1,153 @@
+package com.exercice.upstreampay.service.archive;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.cache.TransactionCache;
+import com.exercice.upstreampay.service.count.TransactionCounter;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.archive.TransactionArchive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Move of the CAPTURED transactions, which cannot change anymore, from the store to the {@link TransactionArchive}
+ * once they were not updated for {@code application.archive.min-age}, so that the store keeps the live
+ * transactions only. Enabled with {@code application.archive.enabled}.
+ * <p>
+ * Every {@code application.archive.interval}, the transactions are archived by segments of
+ * {@code application.archive.segment-transactions}: the segment is written as pending, the transactions are
+ * deleted from the store unless they were modified meanwhile, then the segment is committed with the deleted
+ * ones. The transactions of a pending segment stay readable from the archive meanwhile. A pending segment left by
+ * a crash is committed first, with its transactions no longer in the store.
+ */
+@Component
+public class TransactionArchiver {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionArchiver.class);
+
+    private final TransactionStore transactionStore;
+
+    private final TransactionArchive transactionArchive;
+
+    private final TransactionCounter transactionCounter;
+
+    private final TransactionCache transactionCache;
+
+    private final ApplicationProperties.Archive properties;
+
+    public TransactionArchiver(
+            TransactionStore transactionStore,
+            TransactionArchive transactionArchive,
+            TransactionCounter transactionCounter,
+            TransactionCache transactionCache,
+            ApplicationProperties applicationProperties
+    ) {
+        this.transactionStore = transactionStore;
+        this.transactionArchive = transactionArchive;
+        this.transactionCounter = transactionCounter;
+        this.transactionCache = transactionCache;
+        this.properties = applicationProperties.getArchive();
+    }
+
+    @Scheduled(fixedDelayString = "${application.archive.interval:PT1H}")
+    public void archive() {
+        try {
+            // a segment left pending is committed even once the archiving is disabled
+            commitPending();
+            if (!properties.isEnabled()) {
+                return;
+            }
+            Instant updatedBefore = Instant.now().minus(properties.getMinAge());
+            int size = properties.getSegmentTransactions();
+            long start = System.nanoTime();
+            long archived = 0;
+            while (true) {
+                List<Transaction> candidates = transactionStore
+                        .findAllUpdatedBefore(Status.CAPTURED, updatedBefore, size)
+                        .collectList()
+                        .block();
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                int deleted = archive(candidates);
+                archived += deleted;
+                // stop at the last candidates, or when they are all modified concurrently
+                if (candidates.size() < size || deleted == 0) {
+                    break;
+                }
+            }
+            if (archived > 0) {
+                log.info(
+                        "Archived {} transactions in {} ms, {} transactions in the archive",
+                        archived,
+                        (System.nanoTime() - start) / 1_000_000,
+                        transactionArchive.count()
+                );
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not archive the transactions", e);
+        }
+    }
+
+    private int archive(List<Transaction> candidates) throws IOException {
+        // the transactions already archived by an interrupted run only have to be deleted from the store
+        Map<String, Long> archivedVersions = new HashMap<>();
+        transactionArchive
+                .findAllById(candidates.stream().map(Transaction::getId).collect(Collectors.toList()))
+                .toIterable()
+                .forEach(archived -> archivedVersions.put(archived.getId(), archived.getVersion()));
+        List<Transaction> toArchive = new ArrayList<>(candidates.size());
+        for (Transaction transaction : candidates) {
+            if (!archivedVersions.containsKey(transaction.getId())
+                    || !Objects.equals(archivedVersions.get(transaction.getId()), transaction.getVersion())) {
+                toArchive.add(transaction);
+            }
+        }
+        long segment = toArchive.isEmpty() ? -1 : transactionArchive.prepare(toArchive);
+        Set<String> deleted = transactionStore.deleteAllUnchanged(candidates).collect(Collectors.toSet()).block();
+        if (segment >= 0) {
+            transactionArchive.commit(
+                    segment,
+                    toArchive.stream().filter(transaction -> deleted.contains(transaction.getId())).collect(Collectors.toList())
+            );
+        }
+        deleted.forEach(transactionCache::invalidate);
+        transactionCounter.removed(deleted.size());
+        return deleted.size();
+    }
+
+    private void commitPending() throws IOException {
+        for (long segment : transactionArchive.pending()) {
+            List<Transaction> transactions = transactionArchive.readPending(segment);
+            Set<String> remaining = transactionStore
+                    .findAllById(transactions.stream().map(Transaction::getId).collect(Collectors.toList()))
+                    .map(Transaction::getId)
+                    .collect(Collectors.toSet())
+                    .block();
+            List<Transaction> deleted = transactions
+                    .stream()
+                    .filter(transaction -> !remaining.contains(transaction.getId()))
+                    .collect(Collectors.toList());
+            transactionArchive.commit(segment, deleted);
+            log.warn(
+                    "Committed the archive segment {} left pending by a previous run: {} of its {} transactions kept",
+                    segment,
+                    deleted.size(),
+                    transactions.size()
+            );
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.exercice.upstreampay.service.cache;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of transactions by id.
+ * <p>
+ * Concurrent misses on the same id share the same pending lookup. Absent transactions are not cached.
+ * When {@code application.cache.enabled} is false every call goes straight to the loader.
+ */
+@Component
+public class TransactionCache implements MeterBinder {
+
+    private final AsyncCache<String, Transaction> cache;
+
+    public TransactionCache(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Cache properties = applicationProperties.getCache();
+        this.cache = properties.isEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(properties.getMaximumSize())
+                        .expireAfterWrite(properties.getTimeToLive())
+                        .recordStats()
+                        .buildAsync()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Get the transaction from the cache, or load it once for all the concurrent callers.
+     *
+     * @param id     the id of the transaction.
+     * @param loader the database lookup used on a miss.
+     * @return the transaction, or empty if the loader found none.
+     */
+    public Mono<Transaction> get(String id, Function<String, Mono<Transaction>> loader) {
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        // the load runs in the context of the caller which missed, so that it is timed as part of its request
+        return Mono.deferContextual(context ->
+                Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).contextWrite(context).toFuture()))
+        );
+    }
+
+    /**
+     * Tell whether a transaction is cached, without loading it.
+     *
+     * @param id the id of the transaction.
+     * @return whether a transaction with this id is currently cached.
+     */
+    public boolean contains(String id) {
+        if (cache == null) {
+            return false;
+        }
+        CompletableFuture<Transaction> cached = cache.getIfPresent(id);
+        return cached != null && cached.isDone() && !cached.isCompletedExceptionally() && cached.join() != null;
+    }
+
+    /**
+     * Get the transaction if it is cached, without loading it.
+     *
+     * @param id the id of the transaction.
+     * @return the cached transaction, or empty.
+     */
+    public Mono<Transaction> getIfPresent(String id) {
+        if (cache == null) {
+            return Mono.empty();
+        }
+        CompletableFuture<Transaction> cached = cache.getIfPresent(id);
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return Mono.empty();
+        }
+        return Mono.justOrEmpty(cached.join());
+    }
+
+    public void put(Transaction transaction) {
+        if (cache != null && transaction.getId() != null) {
+            cache.put(transaction.getId(), CompletableFuture.completedFuture(transaction));
+        }
+    }
+
+    public void invalidate(String id) {
+        if (cache != null && id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.synchronous().estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, "transactions");
+        }
+    }
+
+    public CacheStats stats() {
+        return cache == null ? CacheStats.empty() : cache.synchronous().stats();
+    }
+}
@@ -0,0 +1,149 @@
+package com.exercice.upstreampay.service.coalesce;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.management.TransactionMetrics;
+import com.exercice.upstreampay.storage.InsertOutcome;
+import com.exercice.upstreampay.storage.TransactionStore;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit of the concurrent inserts of single transactions.
+ * <p>
+ * The inserts are queued and written with one bulk insert once {@code application.coalesce.max-batch-size}
+ * are waiting, or {@code application.coalesce.max-delay} after the first of them was queued. Every caller
+ * still gets its own saved transaction: the ids are assigned before the insert, so that after a failed bulk
+ * insert the transactions which were written anyway complete normally, the ones the insert did not reach are
+ * inserted again, and only the ones which cannot be inserted get an error.
+ */
+@Component
+public class TransactionInsertCoalescer {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionInsertCoalescer.class);
+
+    private final TransactionStore transactionStore;
+
+    private final TransactionMetrics transactionMetrics;
+
+    private final int maxBatchSize;
+
+    private final long maxDelayMicros;
+
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private List<PendingInsert> pending = new ArrayList<>();
+
+    private Disposable flushTimer;
+
+    public TransactionInsertCoalescer(
+            TransactionStore transactionStore,
+            TransactionMetrics transactionMetrics,
+            ApplicationProperties applicationProperties
+    ) {
+        this.transactionStore = transactionStore;
+        this.transactionMetrics = transactionMetrics;
+        this.maxBatchSize = applicationProperties.getCoalesce().getMaxBatchSize();
+        this.maxDelayMicros = applicationProperties.getCoalesce().getMaxDelay().toNanos() / 1000;
+    }
+
+    /**
+     * Insert a new transaction with the next batch.
+     *
+     * @param transaction the transaction to insert.
+     * @return the inserted transaction.
+     */
+    public Mono<Transaction> insert(Transaction transaction) {
+        return Mono.create(sink -> enqueue(new PendingInsert(transaction, sink)));
+    }
+
+    private void enqueue(PendingInsert insert) {
+        if (insert.transaction.getId() == null) {
+            insert.transaction.setId(ObjectId.get().toHexString());
+        }
+        List<PendingInsert> batch = null;
+        synchronized (this) {
+            pending.add(insert);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                flushTimer = scheduler.schedule(this::flushDue, maxDelayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        if (batch != null) {
+            flush(batch);
+        }
+    }
+
+    private void flushDue() {
+        List<PendingInsert> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        flush(batch);
+    }
+
+    private List<PendingInsert> takePending() {
+        List<PendingInsert> batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        if (flushTimer != null) {
+            flushTimer.dispose();
+            flushTimer = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Write a batch, each caller getting the outcome of its own transaction: after a failed bulk insert, only the
+     * transactions which cannot be inserted fail, and all of them fail if the outcome cannot be read back.
+     */
+    private void flush(List<PendingInsert> batch) {
+        transactionMetrics.coalesced(batch.size());
+        List<Transaction> transactions = batch.stream().map(insert -> insert.transaction).collect(Collectors.toList());
+        transactionStore
+                .insertEach(transactions)
+                .collectList()
+                .subscribe(
+                        outcomes -> {
+                            for (int i = 0; i < batch.size(); i++) {
+                                InsertOutcome outcome = outcomes.get(i);
+                                if (outcome.isInserted()) {
+                                    batch.get(i).sink.success(outcome.getTransaction());
+                                } else {
+                                    batch.get(i).sink.error(outcome.getError());
+                                }
+                            }
+                        },
+                        e -> {
+                            log.warn("Bulk insert of {} Transactions failed: {}", batch.size(), e.getMessage());
+                            batch.forEach(insert -> insert.sink.error(e));
+                        }
+                );
+    }
+
+    private static final class PendingInsert {
+
+        private final Transaction transaction;
+        private final MonoSink<Transaction> sink;
+
+        private PendingInsert(Transaction transaction, MonoSink<Transaction> sink) {
+            this.transaction = transaction;
+            this.sink = sink;
+        }
+    }
+}
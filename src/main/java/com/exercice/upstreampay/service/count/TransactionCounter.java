@@ -0,0 +1,82 @@
+package com.exercice.upstreampay.service.count;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.config.ApplicationProperties.Count.Strategy;
+import com.exercice.upstreampay.storage.TransactionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count of the transactions, computed with the strategy configured in {@code application.count.strategy}.
+ * <p>
+ * With the {@link Strategy#COUNTER} strategy, the count is kept in process: it is seeded and then reconciled
+ * with an exact count every {@code application.count.reconcile-interval}, and the service reports its inserts
+ * in between. Until the first reconciliation is done, the exact count is used.
+ */
+@Component
+public class TransactionCounter {
+
+    private static final long NOT_SEEDED = -1;
+
+    private final Logger log = LoggerFactory.getLogger(TransactionCounter.class);
+
+    private final TransactionStore transactionStore;
+
+    private final Strategy strategy;
+
+    private final AtomicLong counter = new AtomicLong(NOT_SEEDED);
+
+    public TransactionCounter(TransactionStore transactionStore, ApplicationProperties applicationProperties) {
+        this.transactionStore = transactionStore;
+        this.strategy = applicationProperties.getCount().getStrategy();
+    }
+
+    public Mono<Long> count() {
+        switch (strategy) {
+            case ESTIMATED:
+                return transactionStore.estimatedCount();
+            case COUNTER:
+                long count = counter.get();
+                return count == NOT_SEEDED ? transactionStore.count() : Mono.just(count);
+            default:
+                return transactionStore.count();
+        }
+    }
+
+    /**
+     * Report inserted transactions.
+     *
+     * @param inserted the number of inserted transactions.
+     */
+    public void added(long inserted) {
+        counter.getAndUpdate(count -> count == NOT_SEEDED ? NOT_SEEDED : count + inserted);
+    }
+
+    /**
+     * Report deleted transactions.
+     *
+     * @param deleted the number of deleted transactions.
+     */
+    public void removed(long deleted) {
+        added(-deleted);
+    }
+
+    @Scheduled(fixedDelayString = "${application.count.reconcile-interval:PT1M}")
+    public void reconcile() {
+        if (strategy != Strategy.COUNTER) {
+            return;
+        }
+        Long count = transactionStore.count().block();
+        if (count != null) {
+            long previous = counter.getAndSet(count);
+            if (previous != NOT_SEEDED && previous != count) {
+                log.debug("Transaction counter reconciled from {} to {}", previous, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.exercice.upstreampay.service.criteria;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * A transaction read with a sparse fieldset, whose representation only has the fields of the fieldset: the full
+ * transactions keep all their fields, empty or not.
+ */
+@JsonSerialize(using = PartialTransaction.Serializer.class)
+final class PartialTransaction extends Transaction {
+
+    private final TransactionFields fields;
+
+    PartialTransaction(TransactionFields fields) {
+        this.fields = fields;
+    }
+
+    TransactionFields getFields() {
+        return fields;
+    }
+
+    static final class Serializer extends StdSerializer<PartialTransaction> {
+
+        Serializer() {
+            super(PartialTransaction.class);
+        }
+
+        @Override
+        public void serialize(PartialTransaction transaction, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(transaction);
+            for (String name : transaction.fields.getNames()) {
+                Object value = value(transaction, name);
+                if (value != null) {
+                    provider.defaultSerializeField(name, value, generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        private static Object value(Transaction transaction, String name) {
+            switch (name) {
+                case TransactionFields.ID:
+                    return transaction.getId();
+                case TransactionFields.PRICE:
+                    return transaction.getPrice();
+                case TransactionFields.TYPE:
+                    return transaction.getType();
+                case TransactionFields.STATUS:
+                    return transaction.getStatus();
+                case TransactionFields.ORDERS:
+                    return transaction.getOrders();
+                case TransactionFields.CREATED_AT:
+                    return transaction.getCreatedAt();
+                case TransactionFields.UPDATED_AT:
+                    return transaction.getUpdatedAt();
+                case TransactionFields.VERSION:
+                    return transaction.getVersion();
+                default:
+                    throw new IllegalArgumentException("Unknown field " + name);
+            }
+        }
+    }
+}
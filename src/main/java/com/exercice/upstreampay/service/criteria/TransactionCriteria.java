@@ -0,0 +1,33 @@
+package com.exercice.upstreampay.service.criteria;
+
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.Instant;
+
+/**
+ * Optional filters of a transaction query. Every filter left empty is ignored.
+ */
+@Data
+public class TransactionCriteria {
+
+    private Status status;
+
+    private PaymentType type;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant createdTo;
+
+    private Double minPrice;
+
+    private Double maxPrice;
+
+    public boolean isEmpty() {
+        return status == null && type == null && createdFrom == null && createdTo == null && minPrice == null && maxPrice == null;
+    }
+}
@@ -0,0 +1,132 @@
+package com.exercice.upstreampay.service.criteria;
+
+import com.exercice.upstreampay.controller.error.BadRequestAlertException;
+import com.exercice.upstreampay.entities.Transaction;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sparse fieldset of a transaction read, from a comma-separated {@code fields} parameter.
+ * <p>
+ * The id is always part of the fieldset. The stores exclude the other fields from their query, so that they are
+ * neither read nor mapped, and return {@linkplain #project(Transaction) projected} entities, whose representation
+ * omits them.
+ */
+@EqualsAndHashCode
+@ToString
+public final class TransactionFields {
+
+    public static final String ID = "id";
+    public static final String PRICE = "price";
+    public static final String TYPE = "type";
+    public static final String STATUS = "status";
+    public static final String ORDERS = "orders";
+    public static final String CREATED_AT = "createdAt";
+    public static final String UPDATED_AT = "updatedAt";
+    public static final String VERSION = "version";
+
+    private static final List<String> NAMES = List.of(ID, PRICE, TYPE, STATUS, ORDERS, CREATED_AT, UPDATED_AT, VERSION);
+
+    public static final TransactionFields ALL = new TransactionFields(null);
+
+    private final Set<String> names;
+
+    private TransactionFields(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Parse a fieldset.
+     *
+     * @param fields the comma-separated field names, or {@code null} for all the fields.
+     * @return the fieldset.
+     */
+    public static TransactionFields parse(String fields) {
+        if (StringUtils.isBlank(fields)) {
+            return ALL;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        names.add(ID);
+        for (String name : fields.split(",")) {
+            String field = name.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (!NAMES.contains(field)) {
+                throw new BadRequestAlertException("Unknown field " + field, "Transaction", "fieldunknown");
+            }
+            names.add(field);
+        }
+        return names.size() == NAMES.size() ? ALL : new TransactionFields(Collections.unmodifiableSet(names));
+    }
+
+    public boolean isAll() {
+        return names == null;
+    }
+
+    /**
+     * @return the names of the fields, the id first.
+     */
+    public Set<String> getNames() {
+        return names == null ? new LinkedHashSet<>(NAMES) : names;
+    }
+
+    public boolean includes(String name) {
+        return names == null || names.contains(name);
+    }
+
+    /**
+     * @param name the name of a field.
+     * @return the fieldset with the given field as well.
+     */
+    public TransactionFields with(String name) {
+        if (includes(name)) {
+            return this;
+        }
+        Set<String> extended = new LinkedHashSet<>(names);
+        extended.add(name);
+        return extended.size() == NAMES.size() ? ALL : new TransactionFields(Collections.unmodifiableSet(extended));
+    }
+
+    /**
+     * Copy the fields of the fieldset to an entity whose representation only has these fields.
+     *
+     * @param transaction the entity, read with this fieldset or a larger one.
+     * @return the entity with only the fields of the fieldset, or the given one for all the fields.
+     */
+    public Transaction project(Transaction transaction) {
+        if (names == null || (transaction instanceof PartialTransaction && ((PartialTransaction) transaction).getFields().equals(this))) {
+            return transaction;
+        }
+        Transaction projected = new PartialTransaction(this);
+        projected.setId(transaction.getId());
+        if (names.contains(PRICE)) {
+            projected.setPrice(transaction.getPrice());
+        }
+        if (names.contains(TYPE)) {
+            projected.setType(transaction.getType());
+        }
+        if (names.contains(STATUS)) {
+            projected.setStatus(transaction.getStatus());
+        }
+        if (names.contains(ORDERS)) {
+            projected.setOrders(transaction.getOrders());
+        }
+        if (names.contains(CREATED_AT)) {
+            projected.setCreatedAt(transaction.getCreatedAt());
+        }
+        if (names.contains(UPDATED_AT)) {
+            projected.setUpdatedAt(transaction.getUpdatedAt());
+        }
+        if (names.contains(VERSION)) {
+            projected.setVersion(transaction.getVersion());
+        }
+        return projected;
+    }
+}
@@ -0,0 +1,25 @@
+package com.exercice.upstreampay.service.dto;
+
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A transaction entering a status.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionEventDTO {
+
+    private String id;
+    private Status previousStatus;
+    private Status status;
+    private PaymentType type;
+    private double price;
+    private Instant at;
+}
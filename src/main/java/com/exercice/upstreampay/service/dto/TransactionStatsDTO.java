@@ -0,0 +1,45 @@
+package com.exercice.upstreampay.service.dto;
+
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number and summed price of the transactions, by status, by payment type and by time bucket.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionStatsDTO {
+
+    private Map<Status, Volume> byStatus;
+    private Map<PaymentType, Volume> byType;
+    private List<Bucket> buckets;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Volume {
+
+        private long count;
+        private double totalPrice;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Bucket {
+
+        private Instant start;
+        private Status status;
+        private PaymentType type;
+        private long count;
+        private double totalPrice;
+    }
+}
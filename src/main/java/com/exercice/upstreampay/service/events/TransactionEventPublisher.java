@@ -0,0 +1,140 @@
+package com.exercice.upstreampay.service.events;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.dto.TransactionEventDTO;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Multicast feed of the status changes of the transactions.
+ * <p>
+ * With the {@code local} source, the service publishes its own successful writes. With the {@code change-stream}
+ * source, the feed follows a MongoDB change stream instead, so that every instance sees the writes of the others;
+ * this needs a replica set, and the previous status is then unknown.
+ * <p>
+ * Every subscriber gets its own buffer of {@code application.events.buffer-size} events. When a slow subscriber
+ * fills it, {@code application.events.overflow} decides whether the oldest or the newest events are dropped,
+ * or the subscriber is disconnected.
+ */
+@Component
+public class TransactionEventPublisher {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionEventPublisher.class);
+
+    /**
+     * Emissions are serialized by {@link #emit}, so the sink does not need to detect concurrent ones.
+     */
+    private final Sinks.Many<TransactionEventDTO> sink = Sinks.unsafe().many().multicast().directBestEffort();
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final ApplicationProperties.Events properties;
+
+    private Disposable changeStream;
+
+    public TransactionEventPublisher(ReactiveMongoTemplate mongoTemplate, ApplicationProperties applicationProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = applicationProperties.getEvents();
+    }
+
+    /**
+     * Publish the status of a transaction written by this instance, unless the write left it unchanged.
+     *
+     * @param previousStatus the status before the write, or {@code null} for a creation.
+     * @param transaction    the transaction after the write.
+     */
+    public void published(Status previousStatus, Transaction transaction) {
+        if (properties.getSource() != ApplicationProperties.Events.Source.LOCAL || previousStatus == transaction.getStatus()) {
+            return;
+        }
+        emit(toEvent(previousStatus, transaction));
+    }
+
+    /**
+     * Subscribe to the status changes.
+     *
+     * @param id     the id of the transaction to follow, or {@code null}.
+     * @param status the status to follow, or {@code null}.
+     * @param type   the payment type to follow, or {@code null}.
+     * @return the events, buffered for this subscriber only.
+     */
+    public Flux<TransactionEventDTO> subscribe(String id, Status status, PaymentType type) {
+        Flux<TransactionEventDTO> events = sink
+                .asFlux()
+                .filter(event -> id == null || id.equals(event.getId()))
+                .filter(event -> status == null || status == event.getStatus())
+                .filter(event -> type == null || type == event.getType());
+        int bufferSize = properties.getBufferSize();
+        switch (properties.getOverflow()) {
+            case DROP_LATEST:
+                return events.onBackpressureBuffer(bufferSize, this::dropped, BufferOverflowStrategy.DROP_LATEST);
+            case DISCONNECT:
+                return events.onBackpressureBuffer(bufferSize, this::dropped, BufferOverflowStrategy.ERROR);
+            default:
+                return events.onBackpressureBuffer(bufferSize, this::dropped, BufferOverflowStrategy.DROP_OLDEST);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void followChangeStream() {
+        if (properties.getSource() != ApplicationProperties.Events.Source.CHANGE_STREAM) {
+            return;
+        }
+        ChangeStreamOptions options = ChangeStreamOptions.builder().fullDocumentLookup(FullDocument.UPDATE_LOOKUP).build();
+        changeStream = mongoTemplate
+                .changeStream(mongoTemplate.getCollectionName(Transaction.class), options, Transaction.class)
+                .filter(change -> change.getOperationType() == OperationType.INSERT
+                        || change.getOperationType() == OperationType.UPDATE
+                        || change.getOperationType() == OperationType.REPLACE)
+                .filter(change -> change.getBody() != null)
+                .map(change -> toEvent(null, change.getBody()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> log.warn("Transaction change stream failed, reconnecting: {}", signal.failure().getMessage())))
+                .subscribe(this::emit);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (changeStream != null) {
+            changeStream.dispose();
+        }
+    }
+
+    private void emit(TransactionEventDTO event) {
+        // writes complete on many threads: an emission only hands the event to the buffer of each subscriber, so
+        // the threads wait for one another instead of retrying
+        synchronized (sink) {
+            // without subscribers the event is simply not delivered
+            sink.tryEmitNext(event);
+        }
+    }
+
+    private void dropped(TransactionEventDTO event) {
+        log.debug("Slow subscriber, dropped event of Transaction {}", event.getId());
+    }
+
+    private static TransactionEventDTO toEvent(Status previousStatus, Transaction transaction) {
+        Instant at = Objects.requireNonNullElseGet(transaction.getUpdatedAt(), Instant::now);
+        return new TransactionEventDTO(transaction.getId(), previousStatus, transaction.getStatus(), transaction.getType(), transaction.getPrice(), at);
+    }
+}
@@ -0,0 +1,157 @@
+package com.exercice.upstreampay.service.idempotency;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.controller.error.BadRequestAlertException;
+import com.exercice.upstreampay.entities.IdempotencyRecord;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.repository.IdempotencyRecordRepository;
+import com.exercice.upstreampay.service.TransactionService;
+import com.exercice.upstreampay.service.limit.ConcurrencyLimitExceededException;
+import com.exercice.upstreampay.service.util.OrderLines;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Creation of transactions under an {@code Idempotency-Key}: the first request with a key creates the
+ * transaction, the following ones get the same transaction back without writing again.
+ * <p>
+ * Keys are claimed by inserting a record keyed by the idempotency key, which expires through a TTL index.
+ * Concurrent requests with the same key in this instance share the same pending creation, and recent keys
+ * are answered from memory. A key whose creation failed after reaching the store stays pending until it expires,
+ * and the requests made with it are answered with a conflict.
+ */
+@Component
+public class IdempotencyService {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final TransactionService transactionService;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final ApplicationProperties.Idempotency properties;
+
+    private final AsyncCache<String, Tuple2<String, Transaction>> recentKeys;
+
+    public IdempotencyService(
+            TransactionService transactionService,
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            ReactiveMongoTemplate mongoTemplate,
+            ApplicationProperties applicationProperties
+    ) {
+        this.transactionService = transactionService;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.properties = applicationProperties.getIdempotency();
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .buildAsync();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        mongoTemplate
+                .indexOps(IdempotencyRecord.class)
+                .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(properties.getTimeToLive()))
+                .subscribe(
+                        index -> log.debug("Idempotency keys expire through index {}", index),
+                        e -> log.warn("Could not create the TTL index of the idempotency keys: {}", e.getMessage())
+                );
+    }
+
+    /**
+     * Save a new transaction once per idempotency key.
+     *
+     * @param key         the idempotency key sent by the client.
+     * @param transaction the transaction to create.
+     * @return the transaction created by the first request made with this key.
+     */
+    public Mono<Transaction> save(String key, Transaction transaction) {
+        String requestHash = requestHash(transaction);
+        return Mono.fromFuture(() -> recentKeys.get(key, (k, executor) -> claimAndSave(k, transaction, requestHash).toFuture()))
+                .flatMap(hashWithTransaction -> {
+                    if (!requestHash.equals(hashWithTransaction.getT1())) {
+                        return Mono.error(reusedKey());
+                    }
+                    return Mono.just(hashWithTransaction.getT2());
+                });
+    }
+
+    private Mono<Tuple2<String, Transaction>> claimAndSave(String key, Transaction transaction, String requestHash) {
+        IdempotencyRecord claim = new IdempotencyRecord(key, requestHash, IdempotencyRecord.State.PENDING, null, Instant.now());
+        return idempotencyRecordRepository
+                .insert(claim)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .flatMap(claimed -> claimed ? saveClaimed(claim, transaction) : replay(key, requestHash));
+    }
+
+    /**
+     * Only a creation rejected before any write releases the key. When the transaction may have been written,
+     * the record stays pending, so that a retry with the same key gets a conflict instead of a second transaction.
+     */
+    private Mono<Tuple2<String, Transaction>> saveClaimed(IdempotencyRecord claim, Transaction transaction) {
+        return Mono
+                .defer(() -> transactionService.save(transaction))
+                .onErrorResume(IdempotencyService::isRejectedBeforeWrite, e -> idempotencyRecordRepository.deleteById(claim.getKey()).then(Mono.error(e)))
+                .flatMap(saved -> {
+                    claim.setState(IdempotencyRecord.State.COMPLETED);
+                    claim.setTransactionId(saved.getId());
+                    return idempotencyRecordRepository
+                            .save(claim)
+                            .doOnError(e -> log.error("Transaction {} was created, but its idempotency key {} stays pending", saved.getId(), claim.getKey(), e))
+                            .thenReturn(Tuples.of(claim.getRequestHash(), saved));
+                });
+    }
+
+    private static boolean isRejectedBeforeWrite(Throwable e) {
+        return e instanceof BadRequestAlertException || e instanceof ConcurrencyLimitExceededException;
+    }
+
+    private Mono<Tuple2<String, Transaction>> replay(String key, String requestHash) {
+        log.debug("Replaying request with idempotency key {}", key);
+        return Mono
+                .defer(() -> idempotencyRecordRepository.findById(key))
+                .filter(record -> record.getState() == IdempotencyRecord.State.COMPLETED || !requestHash.equals(record.getRequestHash()))
+                .repeatWhenEmpty(attempts -> attempts.delayElements(POLL_INTERVAL))
+                .timeout(
+                        properties.getPendingTimeout(),
+                        Mono.error(new ConcurrencyFailureException("A request with idempotency key " + key + " is still in progress"))
+                )
+                .flatMap(record -> {
+                    if (!requestHash.equals(record.getRequestHash())) {
+                        return Mono.error(reusedKey());
+                    }
+                    return transactionService.findOne(record.getTransactionId()).map(saved -> Tuples.of(requestHash, saved));
+                });
+    }
+
+    private static BadRequestAlertException reusedKey() {
+        return new BadRequestAlertException("The idempotency key was already used for another request", "transaction", "idempotencykeyreused");
+    }
+
+    private static String requestHash(Transaction transaction) {
+        return transaction.getType() + "|" + transaction.getPrice() + "|" + OrderLines.fingerprint(transaction.getOrders());
+    }
+}
@@ -1,28 +1,106 @@
 package com.exercice.upstreampay.service.impl;
 
+import com.exercice.upstreampay.config.ApplicationProperties;
 import com.exercice.upstreampay.controller.error.BadRequestAlertException;
 import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
 import com.exercice.upstreampay.entities.enumerations.Status;
-import com.exercice.upstreampay.repository.TransactionRepository;
+import com.exercice.upstreampay.management.RequestTimings;
+import com.exercice.upstreampay.management.TransactionMetrics;
 import com.exercice.upstreampay.service.TransactionService;
+import com.exercice.upstreampay.service.cache.TransactionCache;
+import com.exercice.upstreampay.service.coalesce.TransactionInsertCoalescer;
+import com.exercice.upstreampay.service.count.TransactionCounter;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.service.events.TransactionEventPublisher;
+import com.exercice.upstreampay.service.limit.ConcurrencyLimitExceededException;
+import com.exercice.upstreampay.service.limit.TransactionLimiters;
+import com.exercice.upstreampay.service.stats.TransactionStatsService;
+import com.exercice.upstreampay.service.util.OrderLines;
+import com.exercice.upstreampay.storage.InsertOutcome;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.TransitionOutcome;
+import com.exercice.upstreampay.storage.archive.TransactionArchive;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 public class TransactionServiceImpl implements TransactionService {
 
+    /**
+     * Number of times a chunk of a bulk transition waits for a write slot, each wait at most
+     * {@code application.limit.retry-after} long.
+     */
+    private static final int LIMIT_RETRIES = 8;
+
+    /**
+     * States of the response of a bulk transition: no outcome yet, outcomes emitted, or failed with a rejection.
+     */
+    private static final int PENDING = 0;
+    private static final int RESPONDING = 1;
+    private static final int REJECTED = 2;
+
     private final Logger log = LoggerFactory.getLogger(TransactionServiceImpl.class);
 
-    private final TransactionRepository transactionRepository;
+    private final TransactionStore transactionStore;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TransactionCache transactionCache;
+
+    private final TransactionCounter transactionCounter;
+
+    private final TransactionMetrics transactionMetrics;
+
+    private final TransactionStatsService transactionStatsService;
+
+    private final TransactionEventPublisher transactionEventPublisher;
 
-    public TransactionServiceImpl(TransactionRepository transactionRepository) {
-        this.transactionRepository = transactionRepository;
+    private final TransactionInsertCoalescer transactionInsertCoalescer;
+
+    private final TransactionLimiters transactionLimiters;
+
+    private final TransactionArchive transactionArchive;
+
+    public TransactionServiceImpl(
+            TransactionStore transactionStore,
+            ApplicationProperties applicationProperties,
+            TransactionCache transactionCache,
+            TransactionCounter transactionCounter,
+            TransactionMetrics transactionMetrics,
+            TransactionStatsService transactionStatsService,
+            TransactionEventPublisher transactionEventPublisher,
+            TransactionInsertCoalescer transactionInsertCoalescer,
+            TransactionLimiters transactionLimiters,
+            TransactionArchive transactionArchive
+    ) {
+        this.transactionStore = transactionStore;
+        this.applicationProperties = applicationProperties;
+        this.transactionCache = transactionCache;
+        this.transactionCounter = transactionCounter;
+        this.transactionMetrics = transactionMetrics;
+        this.transactionStatsService = transactionStatsService;
+        this.transactionEventPublisher = transactionEventPublisher;
+        this.transactionInsertCoalescer = transactionInsertCoalescer;
+        this.transactionLimiters = transactionLimiters;
+        this.transactionArchive = transactionArchive;
     }
 
     @Override
@@ -31,59 +109,301 @@ public class TransactionServiceImpl implements TransactionService {
         if (!transaction.getStatus().equals(Status.NEW)) {
             throw new BadRequestAlertException("A new transaction must be with NEW status", "Transaction", "error.transaction.status");
         }
-        return transactionRepository.save(transaction);
+        transaction.setOrdersFingerprint(OrderLines.fingerprint(transaction.getOrders()));
+        Mono<Transaction> insert = applicationProperties.getCoalesce().isEnabled()
+                ? transactionInsertCoalescer.insert(transaction)
+                : transactionStore.save(transaction);
+        insert = RequestTimings.span("store.insert", insert);
+        return transactionMetrics.time("save", transactionLimiters.limit(TransactionLimiters.Kind.WRITE, insert))
+                .map(saved -> {
+                    transactionCache.put(saved);
+                    transactionCounter.added(1);
+                    transactionEventPublisher.published(null, saved);
+                    transactionStatsService.recordCreated(List.of(saved));
+                    return saved;
+                });
+    }
+
+    @Override
+    public Flux<InsertOutcome> saveAll(List<Transaction> transactions) {
+        log.debug("Request to save a chunk of {} Transactions", transactions.size());
+        if (transactions.stream().anyMatch(transaction -> !Status.NEW.equals(transaction.getStatus()))) {
+            return Flux.error(new BadRequestAlertException("A new transaction must be with NEW status", "Transaction", "error.transaction.status"));
+        }
+        transactions.forEach(transaction -> transaction.setOrdersFingerprint(OrderLines.fingerprint(transaction.getOrders())));
+        Flux<InsertOutcome> insert = transactionLimiters.limit(
+                TransactionLimiters.Kind.WRITE,
+                RequestTimings.span("store.insert", transactionStore.insertEach(transactions))
+        );
+        return transactionMetrics.time("saveAll", insert)
+                .collectList()
+                .flatMapIterable(outcomes -> {
+                    List<Transaction> saved = new ArrayList<>(outcomes.size());
+                    for (InsertOutcome outcome : outcomes) {
+                        if (outcome.isInserted()) {
+                            Transaction transaction = outcome.getTransaction();
+                            transactionCounter.added(1);
+                            transactionEventPublisher.published(null, transaction);
+                            saved.add(transaction);
+                        }
+                    }
+                    transactionStatsService.recordCreated(saved);
+                    return outcomes;
+                });
     }
 
     @Override
     public Mono<Transaction> update(Transaction givenTransaction) {
         log.debug("Request to update Transaction : {}", givenTransaction);
+        if (givenTransaction.getStatus() == null) {
+            throw new BadRequestAlertException("The status must be not empty", "Transaction", "error.status");
+        }
+        givenTransaction.setOrdersFingerprint(OrderLines.fingerprint(givenTransaction.getOrders()));
+        Mono<Tuple2<Transaction, Transaction>> update = RequestTimings
+                .span(
+                        "store.update",
+                        transactionStore.updateIfTransitionAllowed(givenTransaction, allowedPreviousStatuses(givenTransaction.getStatus()))
+                )
+                .switchIfEmpty(Mono.defer(() -> rejectUpdate(givenTransaction)));
+        return transactionMetrics.time("update", transactionLimiters.limit(TransactionLimiters.Kind.WRITE, update))
+                .map(previousAndUpdated -> {
+                    Transaction updated = previousAndUpdated.getT2();
+                    transactionCache.put(updated);
+                    transactionMetrics.transitioned(previousAndUpdated.getT1().getStatus(), updated.getStatus());
+                    transactionEventPublisher.published(previousAndUpdated.getT1().getStatus(), updated);
+                    transactionStatsService.recordUpdated(previousAndUpdated.getT1(), updated);
+                    return updated;
+                })
+                .doOnError(e -> transactionCache.invalidate(givenTransaction.getId()));
+    }
 
-        return transactionRepository.findById(givenTransaction.getId()).flatMap(transaction -> {
-            String givenStatus = givenTransaction.getStatus().toString();
-            String status = Objects.requireNonNull(transaction).getStatus().toString();
-
-            boolean checkStatus = verifyTransactionStatus(givenTransaction.getStatus(), transaction);
-            if (!checkStatus) {
-                throw new BadRequestAlertException("The status" + status + " cannot be modified as" + givenStatus, "Transaction", "error.transaction.update");
-            }
-            boolean checkOrder = verifyTransactionOrder(transaction, givenTransaction);
-            if (!checkOrder) {
-                throw new BadRequestAlertException("Orders must be immutable", "Transaction", "error.transaction.update");
-            }
-            return transactionRepository.save(givenTransaction);
+    @Override
+    public Flux<TransitionOutcome> transitionAll(Flux<String> ids, Status status) {
+        log.debug("Request to move Transactions to : {}", status);
+        if (status == null) {
+            throw new BadRequestAlertException("The status must be not empty", "Transaction", "error.status");
+        }
+        List<Status> fromStatuses = allowedPreviousStatuses(status);
+        ApplicationProperties.Batch batch = applicationProperties.getBatch();
+        return Flux.defer(() -> {
+            AtomicInteger response = new AtomicInteger(PENDING);
+            return ids
+                    .distinct()
+                    .buffer(batch.getChunkSize())
+                    .flatMap(chunk -> transitionChunk(chunk, status, fromStatuses, response), batch.getConcurrency());
         });
     }
 
     @Override
-    public Flux<Transaction> findAll(Pageable pageable) {
+    public Flux<TransitionOutcome> transitionAll(TransactionCriteria criteria, Status status) {
+        log.debug("Request to move Transactions by criteria : {} to : {}", criteria, status);
+        verifyIndexed(criteria);
+        Flux<String> ids = transactionStore
+                .findAll(criteria, Pageable.unpaged(), TransactionFields.parse(TransactionFields.ID))
+                .map(Transaction::getId);
+        return transitionAll(ids, status);
+    }
+
+    /**
+     * A chunk which gets no write slot fails the whole run with the rejection while no outcome was emitted, so that
+     * the client gets a {@code 429}. Once outcomes were emitted, its transactions are reported as rejected instead.
+     */
+    private Flux<TransitionOutcome> transitionChunk(List<String> ids, Status status, List<Status> fromStatuses, AtomicInteger response) {
+        Flux<TransitionOutcome> write = transactionLimiters
+                .limit(TransactionLimiters.Kind.WRITE, RequestTimings.span("store.transition", transactionStore.transitionAll(ids, status, fromStatuses)))
+                // a bulk run gives way to the other writes for a while, then fails with the rejection
+                .retryWhen(Retry
+                        .backoff(LIMIT_RETRIES, Duration.ofMillis(10))
+                        .maxBackoff(applicationProperties.getLimit().getRetryAfter())
+                        .filter(ConcurrencyLimitExceededException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        return transactionMetrics.time("transitionAll", write)
+                .collectList()
+                .flatMapIterable(outcomes -> {
+                    List<Tuple2<Transaction, Transaction>> updates = new ArrayList<>(outcomes.size());
+                    for (TransitionOutcome outcome : outcomes) {
+                        if (outcome.getResult() == TransitionOutcome.Result.UPDATED) {
+                            transactionCache.put(outcome.getUpdated());
+                            transactionMetrics.transitioned(outcome.getPrevious().getStatus(), status);
+                            transactionEventPublisher.published(outcome.getPrevious().getStatus(), outcome.getUpdated());
+                            updates.add(Tuples.of(outcome.getPrevious(), outcome.getUpdated()));
+                        } else if (outcome.getResult() == TransitionOutcome.Result.CONFLICT) {
+                            transactionCache.invalidate(outcome.getId());
+                        }
+                    }
+                    transactionStatsService.recordUpdated(updates);
+                    return respond(response) ? outcomes : List.<TransitionOutcome>of();
+                })
+                .onErrorResume(e -> {
+                    if (e instanceof ConcurrencyLimitExceededException) {
+                        if (response.compareAndSet(PENDING, REJECTED) || response.get() == REJECTED) {
+                            return Flux.error(e);
+                        }
+                        log.warn("Bulk transition of {} Transactions rejected: {}", ids.size(), e.getMessage());
+                        return Flux.fromIterable(ids).map(TransitionOutcome::rejected);
+                    }
+                    log.error("Bulk transition of {} Transactions failed", ids.size(), e);
+                    ids.forEach(transactionCache::invalidate);
+                    return respond(response) ? Flux.fromIterable(ids).map(TransitionOutcome::failed) : Flux.empty();
+                });
+    }
+
+    /**
+     * @return whether outcomes may be emitted. A rejection is answered first if no outcome was emitted before it,
+     * and the outcomes of the chunks written meanwhile are then dropped with the response.
+     */
+    private static boolean respond(AtomicInteger response) {
+        return response.compareAndSet(PENDING, RESPONDING) || response.get() == RESPONDING;
+    }
+
+    /**
+     * Find out why a conditional update matched nothing. Only runs on the failure path, so a successful
+     * update stays a single round trip.
+     */
+    private <T> Mono<T> rejectUpdate(Transaction givenTransaction) {
+        return RequestTimings
+                .span("store.findById", transactionStore.findById(givenTransaction.getId()))
+                .switchIfEmpty(Mono.defer(() -> rejectMissing(givenTransaction.getId())))
+                .flatMap(transaction -> {
+                    if (!verifyTransactionStatus(givenTransaction.getStatus(), transaction.getStatus())) {
+                        return Mono.error(new BadRequestAlertException(
+                                "The status " + transaction.getStatus() + " cannot be modified as " + givenTransaction.getStatus(),
+                                "Transaction",
+                                "error.transaction.update"
+                        ));
+                    }
+                    if (!verifyTransactionOrder(transaction, givenTransaction)) {
+                        return Mono.error(new BadRequestAlertException("Orders must be immutable", "Transaction", "error.transaction.update"));
+                    }
+                    return Mono.error(new OptimisticLockingFailureException(
+                            "Transaction " + givenTransaction.getId() + " was modified concurrently"
+                    ));
+                });
+    }
+
+    private <T> Mono<T> rejectMissing(String id) {
+        return findArchived(id)
+                .flatMap(archived -> Mono.<T>error(
+                        new BadRequestAlertException("An archived transaction cannot be modified", "Transaction", "error.transaction.archived")
+                ))
+                .switchIfEmpty(Mono.error(new BadRequestAlertException("Entity not found", "Transaction", "idnotfound")));
+    }
+
+    @Override
+    public Flux<Transaction> findAll(Pageable pageable, TransactionFields fields) {
         log.debug("Request to get all Transactions");
-        return transactionRepository.findAllBy(pageable);
+        return transactionMetrics.time("findAll", read(RequestTimings.span("store.find", transactionStore.findAll(pageable, fields))));
+    }
+
+    @Override
+    public Flux<Transaction> findAll(TransactionCriteria criteria, Pageable pageable, TransactionFields fields) {
+        log.debug("Request to get Transactions by criteria : {}", criteria);
+        if (criteria.isEmpty()) {
+            return findAll(pageable, fields);
+        }
+        verifyIndexed(criteria);
+        return transactionMetrics.time("findAll", read(RequestTimings.span("store.find", transactionStore.findAll(criteria, pageable, fields))));
+    }
+
+    private void verifyIndexed(TransactionCriteria criteria) {
+        if (transactionStore.isIndexed(criteria)) {
+            return;
+        }
+        if (applicationProperties.getQuery().getUncoveredFilters() == ApplicationProperties.Query.UncoveredFilters.REJECT) {
+            throw new BadRequestAlertException("No index covers this combination of filters", "Transaction", "filternotindexed");
+        }
+        log.warn("No index covers the Transaction filters {}, the query scans the collection", criteria);
+    }
+
+    @Override
+    public Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields) {
+        log.debug("Request to get Transactions after : {}", lastId);
+        return transactionMetrics.time("findAllAfter", read(RequestTimings.span("store.find", transactionStore.findAllAfter(lastId, size, fields))));
+    }
+
+    @Override
+    public Flux<Transaction> streamAll(Status status, PaymentType type, TransactionFields fields, boolean archived) {
+        log.debug("Request to stream Transactions : {}, {}, {}", status, type, archived);
+        Flux<Transaction> transactions = transactionStore.streamAll(status, type, applicationProperties.getStream().getBatchSize(), fields);
+        if (!archived || (status != null && status != Status.CAPTURED)) {
+            return transactions;
+        }
+        return transactions.concatWith(transactionArchive
+                .streamAll()
+                .filter(transaction -> type == null || type == transaction.getType())
+                .map(fields::project));
     }
 
     @Override
     public Mono<Transaction> findOne(String id) {
-        log.debug("Request to get Transaction : {}", id);
-        return transactionRepository.findById(id);
+        return findOne(id, TransactionFields.ALL);
+    }
+
+    /**
+     * Partial transactions are not cached: a cached transaction is projected, a missing one is read partially.
+     * A transaction missing from the store is looked up in the archive.
+     */
+    @Override
+    public Mono<Transaction> findOne(String id, TransactionFields fields) {
+        log.debug("Request to get Transaction : {}, {}", id, fields);
+        Mono<Transaction> transaction = fields.isAll()
+                ? transactionCache.get(id, key -> RequestTimings
+                        .span("store.findById", transactionStore.findById(key))
+                        .switchIfEmpty(Mono.defer(() -> findArchived(key))))
+                : transactionCache
+                        .getIfPresent(id)
+                        .map(fields::project)
+                        .switchIfEmpty(Mono.defer(() -> RequestTimings.span("store.findById", transactionStore.findById(id, fields))))
+                        .switchIfEmpty(Mono.defer(() -> findArchived(id).map(fields::project)));
+        return transactionMetrics.time("findOne", transactionLimiters.limit(TransactionLimiters.Kind.READ, transaction));
+    }
+
+    private Mono<Transaction> findArchived(String id) {
+        return RequestTimings.span("archive.findById", transactionArchive.findById(id));
     }
 
     @Override
     public Mono<Boolean> existsById(String id) {
-        return transactionRepository.existsById(id);
+        if (transactionCache.contains(id)) {
+            return Mono.just(true);
+        }
+        return RequestTimings.span("store.existsById", transactionStore.existsById(id));
     }
 
-    private boolean verifyTransactionStatus(Status status, Transaction transaction) {
-        if (Objects.requireNonNull(transaction).getStatus().equals(Status.CAPTURED) && !status.equals(Status.CAPTURED)) {
+    private boolean verifyTransactionStatus(Status status, Status savedStatus) {
+        if (Objects.requireNonNull(savedStatus).equals(Status.CAPTURED) && !status.equals(Status.CAPTURED)) {
             return false;
         }
-        return !Objects.requireNonNull(transaction).getStatus().equals(Status.NEW) || !status.equals(Status.CAPTURED);
+        return !savedStatus.equals(Status.NEW) || !status.equals(Status.CAPTURED);
+    }
+
+    private List<Status> allowedPreviousStatuses(Status status) {
+        return Arrays.stream(Status.values())
+                .filter(savedStatus -> verifyTransactionStatus(status, savedStatus))
+                .collect(Collectors.toList());
     }
 
     public boolean verifyTransactionOrder(Transaction savedTransaction, Transaction transaction) {
-        return Objects.requireNonNull(savedTransaction).getOrders().size() == transaction.getOrders().size() &&
-                Objects.requireNonNull(savedTransaction).getOrders().stream().filter(order1 -> !transaction.getOrders().contains(order1)).count() <= 0;
+        return OrderLines.sameLines(Objects.requireNonNull(savedTransaction).getOrders(), transaction.getOrders());
     }
 
+    @Override
     public Mono<Long> countAll() {
-        return transactionRepository.count();
+        return transactionMetrics.time("countAll", transactionCounter.count().map(count -> count + transactionArchive.count()));
+    }
+
+    @Override
+    public Mono<Long> count(TransactionCriteria criteria) {
+        if (criteria.isEmpty()) {
+            return countAll();
+        }
+        return transactionMetrics.time("count", transactionLimiters.limit(
+                TransactionLimiters.Kind.READ,
+                RequestTimings.span("store.count", transactionStore.count(criteria))
+        ));
+    }
+
+    private Flux<Transaction> read(Flux<Transaction> query) {
+        return transactionLimiters.limit(TransactionLimiters.Kind.READ, query);
     }
 }
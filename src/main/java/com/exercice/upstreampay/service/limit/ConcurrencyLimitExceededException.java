@@ -0,0 +1,29 @@
+package com.exercice.upstreampay.service.limit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * A request rejected because the limit of concurrent requests of its kind is reached.
+ */
+public class ConcurrencyLimitExceededException extends ResponseStatusException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitExceededException(TransactionLimiters.Kind kind, Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent " + kind.name().toLowerCase() + " requests");
+        this.retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
@@ -0,0 +1,97 @@
+package com.exercice.upstreampay.service.limit;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+
+/**
+ * Limit of concurrent requests adapted with an additive increase, multiplicative decrease (AIMD) rule.
+ * <p>
+ * Every request completing under the latency threshold raises the limit by {@code 1 / limit}, that is by one
+ * for a whole window of requests, as long as the limit is actually used. Every request over the threshold or
+ * failing because of the database multiplies it by the backoff ratio. Requests over the limit are rejected at
+ * once instead of queuing in front of the database.
+ */
+public class ConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private double limit;
+
+    private int inFlight;
+
+    private long rejected;
+
+    public ConcurrencyLimiter(ApplicationProperties.Limit.Kind properties, double backoffRatio) {
+        this.minLimit = properties.getMinLimit();
+        this.maxLimit = properties.getMaxLimit();
+        this.latencyThresholdNanos = properties.getLatencyThreshold().toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, properties.getInitialLimit()));
+    }
+
+    /**
+     * Take a slot, which must then be given back with exactly one of {@link #onSuccess(long)},
+     * {@link #onDropped()} or {@link #onIgnored()}.
+     *
+     * @return whether a slot was free.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected++;
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Give back the slot of a completed request.
+     *
+     * @param latencyNanos the time the request took.
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        if (latencyNanos > latencyThresholdNanos) {
+            backOff();
+        } else if (inFlight * 2 >= limit) {
+            // a limit which is not reached says nothing about the capacity
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        inFlight--;
+    }
+
+    /**
+     * Give back the slot of a request failed by an overload.
+     */
+    public synchronized void onDropped() {
+        backOff();
+        inFlight--;
+    }
+
+    /**
+     * Give back the slot of a request whose latency is not a sign of the load, such as a cancelled request or a stream.
+     */
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    private void backOff() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
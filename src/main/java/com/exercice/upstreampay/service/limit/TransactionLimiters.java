@@ -0,0 +1,183 @@
+package com.exercice.upstreampay.service.limit;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The concurrency limiters of the transaction reads and writes, which have separate limits so that a slow
+ * kind of request does not starve the other.
+ * <p>
+ * The HTTP requests are admitted by {@code ConcurrencyLimitFilter}; {@link #limit(Kind, Mono)} admits the
+ * service calls made outside of an admitted request. When {@code application.limit.enabled} is false nothing
+ * is limited.
+ */
+@Component
+public class TransactionLimiters implements MeterBinder {
+
+    /**
+     * Key of the Reactor context of the calls made on behalf of an admitted request.
+     */
+    public static final String ADMITTED = TransactionLimiters.class.getName() + ".admitted";
+
+    public enum Kind {
+        READ,
+        WRITE,
+    }
+
+    private final boolean enabled;
+
+    private final Duration retryAfter;
+
+    private final Map<Kind, ConcurrencyLimiter> limiters = new EnumMap<>(Kind.class);
+
+    public TransactionLimiters(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Limit properties = applicationProperties.getLimit();
+        this.enabled = properties.isEnabled();
+        this.retryAfter = properties.getRetryAfter();
+        limiters.put(Kind.READ, new ConcurrencyLimiter(properties.getRead(), properties.getBackoffRatio()));
+        limiters.put(Kind.WRITE, new ConcurrencyLimiter(properties.getWrite(), properties.getBackoffRatio()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ConcurrencyLimiter get(Kind kind) {
+        return limiters.get(kind);
+    }
+
+    public ConcurrencyLimitExceededException rejection(Kind kind) {
+        return new ConcurrencyLimitExceededException(kind, retryAfter);
+    }
+
+    /**
+     * Run a service call within the limit of its kind, unless it is made on behalf of an admitted request.
+     *
+     * @param kind the kind of the call.
+     * @param call the call.
+     * @return the call, or a {@link ConcurrencyLimitExceededException} if the limit is reached.
+     */
+    public <T> Mono<T> limit(Kind kind, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Mono.deferContextual(context -> {
+            if (context.hasKey(ADMITTED)) {
+                return call;
+            }
+            ConcurrencyLimiter limiter = limiters.get(kind);
+            if (!limiter.tryAcquire()) {
+                return Mono.error(rejection(kind));
+            }
+            long start = System.nanoTime();
+            // an operator cancelling on the error, such as a retry, runs the finally hook before the error one ends
+            AtomicBoolean released = new AtomicBoolean();
+            return call
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            release(limiter, start, e);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (released.compareAndSet(false, true)) {
+                            release(limiter, start, signal);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Run a service call within the limit of its kind, unless it is made on behalf of an admitted request.
+     *
+     * @param kind the kind of the call.
+     * @param call the call.
+     * @return the call, or a {@link ConcurrencyLimitExceededException} if the limit is reached.
+     */
+    public <T> Flux<T> limit(Kind kind, Flux<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Flux.deferContextual(context -> {
+            if (context.hasKey(ADMITTED)) {
+                return call;
+            }
+            ConcurrencyLimiter limiter = limiters.get(kind);
+            if (!limiter.tryAcquire()) {
+                return Flux.error(rejection(kind));
+            }
+            long start = System.nanoTime();
+            // an operator cancelling on the error, such as a retry, runs the finally hook before the error one ends
+            AtomicBoolean released = new AtomicBoolean();
+            return call
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            release(limiter, start, e);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (released.compareAndSet(false, true)) {
+                            release(limiter, start, signal);
+                        }
+                    });
+        });
+    }
+
+    private static void release(ConcurrencyLimiter limiter, long start, SignalType signal) {
+        if (signal == SignalType.ON_COMPLETE) {
+            limiter.onSuccess(System.nanoTime() - start);
+        } else {
+            limiter.onIgnored();
+        }
+    }
+
+    private static void release(ConcurrencyLimiter limiter, long start, Throwable error) {
+        if (isOverload(error)) {
+            limiter.onDropped();
+        } else {
+            limiter.onSuccess(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Tell whether a failure is a sign that the database is overloaded, rather than a rejected request.
+     */
+    public static boolean isOverload(Throwable error) {
+        return error instanceof TimeoutException
+                || error instanceof QueryTimeoutException
+                || error instanceof DataAccessResourceFailureException;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limiters.forEach((kind, limiter) -> {
+            String tag = kind.name().toLowerCase();
+            Gauge.builder("transaction.limit", limiter, ConcurrencyLimiter::getLimit)
+                    .description("Current limit of concurrent transaction requests")
+                    .tag("kind", tag)
+                    .register(registry);
+            Gauge.builder("transaction.limit.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                    .description("Transaction requests in flight")
+                    .tag("kind", tag)
+                    .register(registry);
+            FunctionCounter.builder("transaction.limit.rejections", limiter, ConcurrencyLimiter::getRejected)
+                    .description("Transaction requests rejected by the concurrency limit")
+                    .tag("kind", tag)
+                    .register(registry);
+        });
+    }
+}
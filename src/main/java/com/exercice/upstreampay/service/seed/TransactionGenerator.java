@@ -0,0 +1,131 @@
+package com.exercice.upstreampay.service.seed;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generator of synthetic transactions, drawn from the distributions of {@code application.seed}.
+ * <p>
+ * Each transaction only depends on the seed and on its index: generating the same range always gives the same
+ * transactions, whatever the chunks it is split into and the order they are generated in. The ids are the index
+ * as a 24 digit hexadecimal number, a valid ObjectId, so that the generated transactions can be addressed.
+ */
+public class TransactionGenerator {
+
+    private final long seed;
+
+    private final int products;
+
+    private final Weights<Status> statuses;
+
+    private final Weights<PaymentType> types;
+
+    private final Weights<Integer> orderLines;
+
+    public TransactionGenerator(ApplicationProperties.Seed properties) {
+        if (properties.getProducts() <= 0) {
+            throw new IllegalArgumentException("application.seed.products must be positive");
+        }
+        this.seed = properties.getRandomSeed();
+        this.products = properties.getProducts();
+        this.statuses = new Weights<>("statuses", properties.getStatuses());
+        this.types = new Weights<>("types", properties.getTypes());
+        this.orderLines = new Weights<>("order-lines", properties.getOrderLines());
+    }
+
+    public static String id(long index) {
+        return String.format("%024x", index);
+    }
+
+    /**
+     * Generate a range of transactions.
+     *
+     * @param from  the index of the first transaction.
+     * @param count the number of transactions.
+     * @return the transactions, without audit dates nor version.
+     */
+    public List<Transaction> generate(long from, int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (long index = from; index < from + count; index++) {
+            transactions.add(generate(index));
+        }
+        return transactions;
+    }
+
+    public Transaction generate(long index) {
+        SplittableRandom random = new SplittableRandom(mix64(seed + mix64(index)));
+        int lines = orderLines.pick(random);
+        List<OrderLine> orders = new ArrayList<>(lines);
+        long priceCents = 0;
+        for (int i = 0; i < lines; i++) {
+            int quantity = 1 + random.nextInt(5);
+            long unitCents = 100 + random.nextInt(19_900);
+            orders.add(new OrderLine("product-" + random.nextInt(products), quantity, unitCents / 100.0));
+            priceCents += quantity * unitCents;
+        }
+        Transaction transaction = new Transaction();
+        transaction.setId(id(index));
+        transaction.setPrice(priceCents / 100.0);
+        transaction.setType(types.pick(random));
+        transaction.setStatus(statuses.pick(random));
+        transaction.setOrders(orders);
+        return transaction;
+    }
+
+    /**
+     * The SplitMix64 finalizer: the seeds of neighbouring indexes have no relation left, their streams are not
+     * shifted copies of one another.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Values drawn with relative weights.
+     */
+    private static final class Weights<T> {
+
+        private final List<T> values = new ArrayList<>();
+
+        private final List<Integer> bounds = new ArrayList<>();
+
+        private final int total;
+
+        Weights(String name, Map<T, Integer> weights) {
+            int sum = 0;
+            for (Map.Entry<T, Integer> weight : weights.entrySet()) {
+                if (weight.getValue() < 0) {
+                    throw new IllegalArgumentException("application.seed." + name + " has a negative weight for " + weight.getKey());
+                }
+                if (weight.getValue() > 0) {
+                    sum += weight.getValue();
+                    values.add(weight.getKey());
+                    bounds.add(sum);
+                }
+            }
+            if (sum == 0) {
+                throw new IllegalArgumentException("application.seed." + name + " needs a positive weight");
+            }
+            this.total = sum;
+        }
+
+        T pick(SplittableRandom random) {
+            int draw = random.nextInt(total);
+            int i = 0;
+            while (draw >= bounds.get(i)) {
+                i++;
+            }
+            return values.get(i);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.exercice.upstreampay.service.seed;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.service.count.TransactionCounter;
+import com.exercice.upstreampay.service.stats.TransactionStatsService;
+import com.exercice.upstreampay.service.util.OrderLines;
+import com.exercice.upstreampay.storage.TransactionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loader of the synthetic transactions of {@link TransactionGenerator}, run at startup with the {@code seed} profile:
+ * <pre>
+ * java -jar upstreampayExercice-1.0-SNAPSHOT-exec.jar --spring.profiles.active=seed --application.seed.count=5000000
+ * </pre>
+ * The transactions are generated and inserted by chunks of {@code application.seed.chunk-size}, with
+ * {@code application.seed.concurrency} chunks in flight. They are written straight to the store, since they may
+ * have any status: the counter and the statistics are updated, but no event is published. The application is only
+ * ready once the load is done, and stops then with {@code application.seed.exit}.
+ * <p>
+ * A store which already has transactions is left as it is, so that restarting with the profile keeps the data set.
+ */
+@Component
+@Profile("seed")
+public class TransactionPreloader implements ApplicationRunner {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionPreloader.class);
+
+    private final TransactionStore transactionStore;
+
+    private final TransactionCounter transactionCounter;
+
+    private final TransactionStatsService transactionStatsService;
+
+    private final ConfigurableApplicationContext context;
+
+    private final ApplicationProperties.Seed properties;
+
+    private final TransactionGenerator generator;
+
+    public TransactionPreloader(
+            TransactionStore transactionStore,
+            TransactionCounter transactionCounter,
+            TransactionStatsService transactionStatsService,
+            ConfigurableApplicationContext context,
+            ApplicationProperties applicationProperties
+    ) {
+        this.transactionStore = transactionStore;
+        this.transactionCounter = transactionCounter;
+        this.transactionStatsService = transactionStatsService;
+        this.context = context;
+        this.properties = applicationProperties.getSeed();
+        this.generator = new TransactionGenerator(properties);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Long existing = transactionStore.count().block();
+        if (existing != null && existing > 0) {
+            log.warn("Not seeding: the store already has {} transactions", existing);
+        } else {
+            load();
+        }
+        if (properties.isExit()) {
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+
+    private void load() {
+        long count = properties.getCount();
+        int chunkSize = properties.getChunkSize();
+        long chunks = (count + chunkSize - 1) / chunkSize;
+        long progressStep = Math.max(1, chunks / 10);
+        AtomicLong loaded = new AtomicLong();
+        AtomicLong done = new AtomicLong();
+        log.info("Seeding {} transactions with seed {}", count, properties.getRandomSeed());
+        long start = System.nanoTime();
+        Flux.range(0, (int) chunks)
+                .flatMap(chunk -> {
+                    long from = (long) chunk * chunkSize;
+                    int size = (int) Math.min(chunkSize, count - from);
+                    return Mono.fromCallable(() -> generate(from, size))
+                            .subscribeOn(Schedulers.parallel())
+                            .flatMap(this::insert);
+                }, properties.getConcurrency())
+                .doOnNext(inserted -> {
+                    long total = loaded.addAndGet(inserted);
+                    if (done.incrementAndGet() % progressStep == 0) {
+                        log.info("Seeded {} / {} transactions", total, count);
+                    }
+                })
+                .then()
+                .block();
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Seeded {} transactions in {} ms ({} per second)", loaded.get(), millis, loaded.get() * 1000 / millis);
+    }
+
+    private List<Transaction> generate(long from, int size) {
+        List<Transaction> transactions = generator.generate(from, size);
+        transactions.forEach(transaction -> transaction.setOrdersFingerprint(OrderLines.fingerprint(transaction.getOrders())));
+        return transactions;
+    }
+
+    private Mono<Integer> insert(List<Transaction> transactions) {
+        return transactionStore
+                .insertAll(transactions)
+                .collectList()
+                .map(saved -> {
+                    transactionCounter.added(saved.size());
+                    transactionStatsService.recordCreated(saved);
+                    return saved.size();
+                });
+    }
+}
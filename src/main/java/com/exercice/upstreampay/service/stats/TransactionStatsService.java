@@ -0,0 +1,329 @@
+package com.exercice.upstreampay.service.stats;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.controller.error.BadRequestAlertException;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.dto.TransactionStatsDTO;
+import com.exercice.upstreampay.storage.archive.TransactionArchive;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rollups of the transaction volume, by time bucket of creation, status and payment type.
+ * <p>
+ * Every rollup is a document of the {@code transaction_stats} collection whose id is the bucket, status and type.
+ * The service reports each creation and each update. They are added up in memory, off the path of the requests,
+ * and applied with {@code $inc} in a single bulk write every {@code application.stats.flush-interval}, so that
+ * reading the statistics costs one document per bucket. The rollups are not written atomically with the
+ * transactions: {@link #rebuild()} recomputes them from the transaction collection with an aggregation pipeline,
+ * keeping the increments applied while it runs.
+ * <p>
+ * The archived transactions stay counted in the rollups, but are no longer in the collection: once the archive
+ * holds transactions, the rebuild leaves alone the buckets which may hold archived ones, that is the buckets
+ * starting before {@code application.archive.min-age} ago.
+ * <p>
+ * The rollups are only kept with the {@code mongo} storage backend.
+ */
+@Component
+public class TransactionStatsService {
+
+    private static final String COLLECTION = "transaction_stats";
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * The increments applied since the last rebuild started, which the rebuild adds to the recomputed rollups.
+     */
+    private static final String SINCE_REBUILD = "sinceRebuild";
+
+    private final Logger log = LoggerFactory.getLogger(TransactionStatsService.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final TransactionArchive transactionArchive;
+
+    private final ApplicationProperties.Archive archiveProperties;
+
+    private final long bucketMillis;
+
+    private final boolean enabled;
+
+    private final Map<Document, double[]> pendingDeltas = new LinkedHashMap<>();
+
+    public TransactionStatsService(
+            ReactiveMongoTemplate mongoTemplate,
+            TransactionArchive transactionArchive,
+            ApplicationProperties applicationProperties
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionArchive = transactionArchive;
+        this.archiveProperties = applicationProperties.getArchive();
+        this.bucketMillis = applicationProperties.getStats().getBucket().toMillis();
+        this.enabled = applicationProperties.getStorage().getBackend() == ApplicationProperties.Storage.Backend.MONGO;
+    }
+
+    /**
+     * Count created transactions in the rollups, with the next flush.
+     *
+     * @param transactions the created transactions.
+     */
+    public void recordCreated(List<Transaction> transactions) {
+        if (!enabled || transactions.isEmpty()) {
+            return;
+        }
+        synchronized (pendingDeltas) {
+            transactions.forEach(transaction -> addDelta(pendingDeltas, transaction, 1));
+        }
+    }
+
+    /**
+     * Move an updated transaction from its previous rollup to its new one, with the next flush.
+     *
+     * @param previous the transaction before the update.
+     * @param updated  the transaction after the update.
+     */
+    public void recordUpdated(Transaction previous, Transaction updated) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (pendingDeltas) {
+            addDelta(pendingDeltas, previous, -1);
+            addDelta(pendingDeltas, updated, 1);
+        }
+    }
+
+    /**
+     * Move updated transactions from their previous rollups to their new ones, with the next flush.
+     *
+     * @param updates the transactions before and after each update.
+     */
+    public void recordUpdated(List<Tuple2<Transaction, Transaction>> updates) {
+        if (!enabled || updates.isEmpty()) {
+            return;
+        }
+        synchronized (pendingDeltas) {
+            updates.forEach(update -> {
+                addDelta(pendingDeltas, update.getT1(), -1);
+                addDelta(pendingDeltas, update.getT2(), 1);
+            });
+        }
+    }
+
+    /**
+     * Apply the increments recorded since the last flush, with a single bulk write. A failed write is logged, and
+     * its increments are left to the next rebuild.
+     */
+    @Scheduled(fixedDelayString = "${application.stats.flush-interval:PT1S}")
+    public void flush() {
+        apply(drain()).subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        apply(drain()).block(SHUTDOWN_TIMEOUT);
+    }
+
+    private Map<Document, double[]> drain() {
+        synchronized (pendingDeltas) {
+            Map<Document, double[]> deltas = new LinkedHashMap<>(pendingDeltas);
+            pendingDeltas.clear();
+            return deltas;
+        }
+    }
+
+    /**
+     * Read the rollups of the buckets starting in {@code [from, to)}.
+     *
+     * @param from the start of the first bucket, or {@code null}.
+     * @param to   the end of the range, or {@code null}.
+     * @return the statistics.
+     */
+    public Mono<TransactionStatsDTO> getStats(Instant from, Instant to) {
+        if (!enabled) {
+            return Mono.error(new BadRequestAlertException("Statistics need the mongo storage backend", "Transaction", "statsunavailable"));
+        }
+        Document range = new Document();
+        if (from != null) {
+            range.append("$gte", Date.from(from));
+        }
+        if (to != null) {
+            range.append("$lt", Date.from(to));
+        }
+        Document filter = range.isEmpty() ? new Document() : new Document("_id.bucket", range);
+        return mongoTemplate
+                .getCollection(COLLECTION)
+                .flatMapMany(collection -> Flux.from(collection.find(filter).sort(new Document("_id.bucket", 1))))
+                .map(TransactionStatsService::toBucket)
+                .filter(bucket -> bucket.getCount() != 0)
+                .collectList()
+                .map(TransactionStatsService::toStats);
+    }
+
+    /**
+     * Recompute all the rollups from the transactions, to repair the drift left by failed increments.
+     * <p>
+     * The increments of the rollups are also counted in {@code sinceRebuild}, which the rebuild resets before it
+     * reads the transactions, then adds to the recomputed rollups: the increments applied meanwhile are kept.
+     */
+    @Scheduled(cron = "${application.stats.rebuild-cron:0 0 3 * * *}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        Date rebuiltAt = new Date();
+        Date horizon = archiveHorizon(rebuiltAt.toInstant());
+        Document rebuiltBuckets = horizon == null ? new Document() : new Document("_id.bucket", new Document("$gte", horizon));
+        List<Document> pipeline = new ArrayList<>();
+        if (horizon != null) {
+            pipeline.add(new Document("$match", new Document("createdAt", new Document("$gte", horizon))));
+        }
+        pipeline.add(new Document("$group", new Document("_id", new Document("bucket", bucketExpression())
+                .append("status", "$status")
+                .append("type", "$type"))
+                .append("count", new Document("$sum", 1))
+                .append("totalPrice", new Document("$sum", "$price"))));
+        pipeline.add(new Document("$set", new Document("rebuiltAt", rebuiltAt)));
+        pipeline.add(new Document("$merge", new Document("into", COLLECTION)
+                .append("whenMatched", List.of(new Document("$set", new Document("count", plusSinceRebuild("$$new.count", "count"))
+                        .append("totalPrice", plusSinceRebuild("$$new.totalPrice", "totalPrice"))
+                        .append("rebuiltAt", "$$new.rebuiltAt"))))
+                .append("whenNotMatched", "insert")));
+        // the rollups without transactions left only hold the increments applied during the rebuild
+        Document staleBuckets = new Document(rebuiltBuckets).append("rebuiltAt", new Document("$ne", rebuiltAt));
+        List<Document> keepSinceRebuild = List.of(new Document("$set", new Document("count", plusSinceRebuild(0L, "count"))
+                .append("totalPrice", plusSinceRebuild(0d, "totalPrice"))));
+        mongoTemplate
+                .getCollection(COLLECTION)
+                .flatMap(stats -> Mono.from(stats.updateMany(
+                        rebuiltBuckets,
+                        new Document("$set", new Document(SINCE_REBUILD + ".count", 0L).append(SINCE_REBUILD + ".totalPrice", 0d))
+                )))
+                .then(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class)))
+                .flatMap(transactions -> Flux.from(transactions.aggregate(pipeline).allowDiskUse(true).toCollection()).then())
+                .then(mongoTemplate.getCollection(COLLECTION))
+                .flatMap(stats -> Mono
+                        .from(stats.updateMany(staleBuckets, keepSinceRebuild))
+                        .then(Mono.from(stats.deleteMany(new Document(staleBuckets).append("count", 0L)))))
+                .subscribe(
+                        deleted -> log.info("Transaction statistics rebuilt, {} stale rollups removed", deleted.getDeletedCount()),
+                        e -> log.error("Could not rebuild the transaction statistics", e)
+                );
+    }
+
+    private static Document plusSinceRebuild(Object value, String field) {
+        return new Document("$add", List.of(value, new Document("$ifNull", List.of("$" + SINCE_REBUILD + "." + field, 0))));
+    }
+
+    /**
+     * The start of the first bucket which cannot hold archived transactions, or {@code null} if the archive is empty.
+     * A transaction is archived after {@code application.archive.min-age} without update, so it was created before.
+     */
+    private Date archiveHorizon(Instant now) {
+        if (!archiveProperties.isEnabled() && transactionArchive.count() == 0) {
+            return null;
+        }
+        return new Date(bucketStart(now.minus(archiveProperties.getMinAge())).getTime() + bucketMillis);
+    }
+
+    private Document bucketExpression() {
+        Document createdAt = new Document("$ifNull", List.of("$createdAt", new Date(0)));
+        return new Document("$subtract", List.of(
+                createdAt,
+                new Document("$mod", List.of(new Document("$toLong", createdAt), bucketMillis))
+        ));
+    }
+
+    private Date bucketStart(Instant instant) {
+        return new Date(instant.toEpochMilli() - Math.floorMod(instant.toEpochMilli(), bucketMillis));
+    }
+
+    private void addDelta(Map<Document, double[]> deltas, Transaction transaction, int sign) {
+        Instant createdAt = transaction.getCreatedAt() == null ? Instant.EPOCH : transaction.getCreatedAt();
+        Document key = new Document("bucket", bucketStart(createdAt))
+                .append("status", transaction.getStatus() == null ? null : transaction.getStatus().name())
+                .append("type", transaction.getType() == null ? null : transaction.getType().name());
+        double[] delta = deltas.computeIfAbsent(key, k -> new double[2]);
+        delta[0] += sign;
+        delta[1] += sign * transaction.getPrice();
+    }
+
+    private Mono<Void> apply(Map<Document, double[]> deltas) {
+        List<WriteModel<Document>> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> {
+            if (delta[0] != 0 || delta[1] != 0) {
+                updates.add(new UpdateOneModel<>(
+                        new Document("_id", key),
+                        new Document("$inc", new Document("count", (long) delta[0])
+                                .append("totalPrice", delta[1])
+                                .append(SINCE_REBUILD + ".count", (long) delta[0])
+                                .append(SINCE_REBUILD + ".totalPrice", delta[1])),
+                        new UpdateOptions().upsert(true)
+                ));
+            }
+        });
+        if (!enabled || updates.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate
+                .getCollection(COLLECTION)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(updates, new BulkWriteOptions().ordered(false))))
+                .doOnError(e -> log.warn("Could not update the transaction statistics: {}", e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static TransactionStatsDTO.Bucket toBucket(Document document) {
+        Document id = document.get("_id", Document.class);
+        String status = id.getString("status");
+        String type = id.getString("type");
+        return new TransactionStatsDTO.Bucket(
+                id.getDate("bucket").toInstant(),
+                status == null ? null : Status.valueOf(status),
+                type == null ? null : PaymentType.valueOf(type),
+                ((Number) document.getOrDefault("count", 0L)).longValue(),
+                ((Number) document.getOrDefault("totalPrice", 0d)).doubleValue()
+        );
+    }
+
+    private static TransactionStatsDTO toStats(List<TransactionStatsDTO.Bucket> buckets) {
+        Map<Status, TransactionStatsDTO.Volume> byStatus = new EnumMap<>(Status.class);
+        Map<PaymentType, TransactionStatsDTO.Volume> byType = new EnumMap<>(PaymentType.class);
+        for (TransactionStatsDTO.Bucket bucket : buckets) {
+            if (bucket.getStatus() != null) {
+                add(byStatus.computeIfAbsent(bucket.getStatus(), s -> new TransactionStatsDTO.Volume()), bucket);
+            }
+            if (bucket.getType() != null) {
+                add(byType.computeIfAbsent(bucket.getType(), t -> new TransactionStatsDTO.Volume()), bucket);
+            }
+        }
+        return new TransactionStatsDTO(byStatus, byType, buckets);
+    }
+
+    private static void add(TransactionStatsDTO.Volume volume, TransactionStatsDTO.Bucket bucket) {
+        volume.setCount(volume.getCount() + bucket.getCount());
+        volume.setTotalPrice(volume.getTotalPrice() + bucket.getTotalPrice());
+    }
+}
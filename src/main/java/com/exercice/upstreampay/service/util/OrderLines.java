@@ -0,0 +1,108 @@
+package com.exercice.upstreampay.service.util;
+
+import com.exercice.upstreampay.entities.OrderLine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comparison and fingerprinting of the order lines of a transaction, both in linear time.
+ * <p>
+ * The lines of a transaction are compared as a multiset: their order does not matter, their multiplicity does.
+ */
+public final class OrderLines {
+
+    private OrderLines() {
+    }
+
+    /**
+     * Compare two lists of order lines, ignoring their order but not the number of times each line appears.
+     *
+     * @param first  the first list.
+     * @param second the second list.
+     * @return whether both lists contain the same lines.
+     */
+    public static boolean sameLines(List<OrderLine> first, List<OrderLine> second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        if (first.size() != second.size()) {
+            return false;
+        }
+        Map<OrderLine, Integer> counts = new HashMap<>(first.size() * 2);
+        for (OrderLine orderLine : first) {
+            counts.merge(orderLine, 1, Integer::sum);
+        }
+        for (OrderLine orderLine : second) {
+            Integer count = counts.get(orderLine);
+            if (count == null) {
+                return false;
+            }
+            if (count == 1) {
+                counts.remove(orderLine);
+            } else {
+                counts.put(orderLine, count - 1);
+            }
+        }
+        return counts.isEmpty();
+    }
+
+    /**
+     * Compute a content fingerprint of the order lines that does not depend on their order: the sum, modulo 2^256,
+     * of the SHA-256 digest of each line. Two lists have the same fingerprint if they have the same lines.
+     *
+     * @param orders the order lines.
+     * @return the fingerprint, as a hexadecimal string.
+     */
+    public static String fingerprint(List<OrderLine> orders) {
+        MessageDigest digest = sha256();
+        // 256-bit accumulator, least significant word first
+        long[] sum = new long[4];
+        if (orders != null) {
+            for (OrderLine orderLine : orders) {
+                ByteBuffer line = ByteBuffer.wrap(digest.digest(canonicalBytes(orderLine)));
+                long carry = 0;
+                for (int i = 0; i < sum.length; i++) {
+                    long word = line.getLong((sum.length - 1 - i) * Long.BYTES);
+                    long partial = sum[i] + word;
+                    long total = partial + carry;
+                    carry = (Long.compareUnsigned(partial, sum[i]) < 0 ? 1 : 0) + (Long.compareUnsigned(total, partial) < 0 ? 1 : 0);
+                    sum[i] = total;
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (int i = sum.length - 1; i >= 0; i--) {
+            String word = Long.toHexString(sum[i]);
+            hex.append("0".repeat(16 - word.length())).append(word);
+        }
+        return hex.toString();
+    }
+
+    private static byte[] canonicalBytes(OrderLine orderLine) {
+        byte[] productName = orderLine.getProductName() == null
+                ? new byte[0]
+                : orderLine.getProductName().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer
+                .allocate(1 + Integer.BYTES + productName.length + Integer.BYTES + Long.BYTES)
+                .put((byte) (orderLine.getProductName() == null ? 0 : 1))
+                .putInt(productName.length)
+                .put(productName)
+                .putInt(orderLine.getQuantity())
+                .putLong(Double.doubleToLongBits(orderLine.getPrice()))
+                .array();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.Transaction;
+
+/**
+ * Outcome of the insert of one transaction of a bulk insert.
+ */
+public final class InsertOutcome {
+
+    private final Transaction transaction;
+
+    private final Throwable error;
+
+    private InsertOutcome(Transaction transaction, Throwable error) {
+        this.transaction = transaction;
+        this.error = error;
+    }
+
+    public static InsertOutcome inserted(Transaction saved) {
+        return new InsertOutcome(saved, null);
+    }
+
+    public static InsertOutcome failed(Transaction transaction, Throwable error) {
+        return new InsertOutcome(transaction, error);
+    }
+
+    public boolean isInserted() {
+        return error == null;
+    }
+
+    /**
+     * @return the inserted entity, or the given transaction if its insert failed.
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return the error of the insert of this transaction, or {@code null} if it was inserted.
+     */
+    public Throwable getError() {
+        return error;
+    }
+}
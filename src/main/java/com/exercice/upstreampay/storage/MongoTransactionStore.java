@@ -0,0 +1,126 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.repository.TransactionIndexes;
+import com.exercice.upstreampay.repository.TransactionRepository;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link TransactionStore} of the MongoDB transaction collection, through the {@link TransactionRepository}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.storage", name = "backend", havingValue = "mongo", matchIfMissing = true)
+public class MongoTransactionStore implements TransactionStore {
+
+    private final TransactionRepository transactionRepository;
+
+    private final TransactionIndexes transactionIndexes;
+
+    public MongoTransactionStore(TransactionRepository transactionRepository, TransactionIndexes transactionIndexes) {
+        this.transactionRepository = transactionRepository;
+        this.transactionIndexes = transactionIndexes;
+    }
+
+    @Override
+    public Mono<Transaction> save(Transaction transaction) {
+        return transactionRepository.save(transaction);
+    }
+
+    @Override
+    public Flux<Transaction> insertAll(List<Transaction> transactions) {
+        return transactionRepository.insert(transactions);
+    }
+
+    @Override
+    public Mono<Tuple2<Transaction, Transaction>> updateIfTransitionAllowed(Transaction transaction, Collection<Status> fromStatuses) {
+        return transactionRepository.updateIfTransitionAllowed(transaction, fromStatuses);
+    }
+
+    @Override
+    public Flux<TransitionOutcome> transitionAll(List<String> ids, Status status, Collection<Status> fromStatuses) {
+        return transactionRepository.transitionAll(ids, status, fromStatuses);
+    }
+
+    @Override
+    public Flux<String> deleteAllUnchanged(List<Transaction> transactions) {
+        return transactionRepository.deleteAllUnchanged(transactions);
+    }
+
+    @Override
+    public Mono<Transaction> findById(String id) {
+        return transactionRepository.findById(id);
+    }
+
+    @Override
+    public Mono<Transaction> findById(String id, TransactionFields fields) {
+        return fields.isAll() ? transactionRepository.findById(id) : transactionRepository.findById(id, fields).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAllById(Collection<String> ids) {
+        return transactionRepository.findAllById(ids);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return transactionRepository.existsById(id);
+    }
+
+    @Override
+    public Flux<Transaction> findAll(Pageable pageable, TransactionFields fields) {
+        return transactionRepository.findAllBy(new TransactionCriteria(), pageable, fields).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAll(TransactionCriteria criteria, Pageable pageable, TransactionFields fields) {
+        return transactionRepository.findAllBy(criteria, pageable, fields).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields) {
+        return transactionRepository.findAllAfter(lastId, size, fields).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> streamAll(Status status, PaymentType type, int batchSize, TransactionFields fields) {
+        return transactionRepository.streamAll(status, type, batchSize, fields).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAllUpdatedBefore(Status status, Instant updatedBefore, int size) {
+        return transactionRepository.findAllUpdatedBefore(status, updatedBefore, size);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return transactionRepository.count();
+    }
+
+    @Override
+    public Mono<Long> estimatedCount() {
+        return transactionRepository.estimatedCount();
+    }
+
+    @Override
+    public Mono<Long> count(TransactionCriteria criteria) {
+        return transactionRepository.countBy(criteria);
+    }
+
+    @Override
+    public boolean isIndexed(TransactionCriteria criteria) {
+        return transactionIndexes.covers(criteria);
+    }
+}
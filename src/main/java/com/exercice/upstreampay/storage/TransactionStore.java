@@ -0,0 +1,203 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Storage of the transactions used by the service layer.
+ * <p>
+ * The implementation is chosen with {@code application.storage.backend}: {@code mongo} for the MongoDB collection,
+ * {@code log} for the embedded log-structured store.
+ */
+public interface TransactionStore {
+
+    /**
+     * Insert a new transaction, assigning its id if it has none, its audit dates and its version.
+     *
+     * @param transaction the transaction to insert.
+     * @return the inserted entity.
+     */
+    Mono<Transaction> save(Transaction transaction);
+
+    /**
+     * Insert new transactions, in order, stopping at the first failure.
+     *
+     * @param transactions the transactions to insert.
+     * @return the inserted entities.
+     */
+    Flux<Transaction> insertAll(List<Transaction> transactions);
+
+    /**
+     * Insert new transactions with a bulk insert, each one succeeding or failing on its own.
+     * <p>
+     * The ids are assigned first. When the bulk insert fails, the transactions it wrote before failing are read
+     * back by id, and the others are inserted again one by one, so that only the ones which cannot be inserted
+     * get an error. If the read back fails too, the returned flux fails: the outcome of the transactions is
+     * unknown.
+     *
+     * @param transactions the transactions to insert, without ids.
+     * @return the outcome of each transaction, in the order they were given.
+     */
+    default Flux<InsertOutcome> insertEach(List<Transaction> transactions) {
+        transactions.forEach(transaction -> {
+            if (transaction.getId() == null) {
+                transaction.setId(ObjectId.get().toHexString());
+            }
+        });
+        return insertAll(transactions)
+                .map(InsertOutcome::inserted)
+                .collectList()
+                .onErrorResume(error -> findAllById(transactions.stream().map(Transaction::getId).collect(Collectors.toList()))
+                        .collectMap(Transaction::getId, Function.identity())
+                        .retryWhen(Retry.backoff(2, Duration.ofMillis(50)))
+                        .onErrorMap(Exceptions::isRetryExhausted, readError -> {
+                            Throwable cause = readError.getCause() == null ? readError : readError.getCause();
+                            cause.addSuppressed(error);
+                            return cause;
+                        })
+                        .flatMap(written -> Flux
+                                .fromIterable(transactions)
+                                .concatMap(transaction -> {
+                                    Transaction saved = written.get(transaction.getId());
+                                    if (saved != null) {
+                                        return Mono.just(InsertOutcome.inserted(saved));
+                                    }
+                                    return insertAll(List.of(transaction))
+                                            .next()
+                                            .map(InsertOutcome::inserted)
+                                            .onErrorResume(e -> Mono.just(InsertOutcome.failed(transaction, e)));
+                                })
+                                .collectList()))
+                .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Apply an update atomically. The update only matches if the stored transaction has one of the given
+     * statuses, the same order lines, and the same version when one is given.
+     *
+     * @param transaction  the new state of the transaction.
+     * @param fromStatuses the statuses the stored transaction may have.
+     * @return the entity as it was before and after the update, or empty if no stored transaction matched.
+     */
+    Mono<Tuple2<Transaction, Transaction>> updateIfTransitionAllowed(Transaction transaction, Collection<Status> fromStatuses);
+
+    /**
+     * Move transactions to a status with a single bulk write, each one only if its status is one of the given
+     * statuses and it is not modified meanwhile.
+     *
+     * @param ids          the distinct ids of the transactions.
+     * @param status       the new status.
+     * @param fromStatuses the statuses the stored transactions may have.
+     * @return the outcome of each id, in no particular order.
+     */
+    Flux<TransitionOutcome> transitionAll(List<String> ids, Status status, Collection<Status> fromStatuses);
+
+    /**
+     * Delete transactions, each one only if it still has the version it was read with.
+     *
+     * @param transactions the transactions, as they were read.
+     * @return the ids of the deleted transactions.
+     */
+    Flux<String> deleteAllUnchanged(List<Transaction> transactions);
+
+    Mono<Transaction> findById(String id);
+
+    /**
+     * Get a transaction, reading only the fields of a fieldset.
+     *
+     * @param id     the id of the entity.
+     * @param fields the fields to read.
+     * @return the entity, with the other fields left empty.
+     */
+    Mono<Transaction> findById(String id, TransactionFields fields);
+
+    Flux<Transaction> findAllById(Collection<String> ids);
+
+    Mono<Boolean> existsById(String id);
+
+    /**
+     * Get a page of the transactions.
+     *
+     * @param pageable the pagination information.
+     * @param fields   the fields to read.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAll(Pageable pageable, TransactionFields fields);
+
+    /**
+     * Get a page of the transactions matching the filters.
+     *
+     * @param criteria the filters.
+     * @param pageable the pagination information.
+     * @param fields   the fields to read.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAll(TransactionCriteria criteria, Pageable pageable, TransactionFields fields);
+
+    /**
+     * Get the transactions following an id, ordered by id.
+     *
+     * @param lastId the last id already read, or {@code null} to start from the first transaction.
+     * @param size   the number of transactions.
+     * @param fields the fields to read.
+     * @return the list of entities.
+     */
+    Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields);
+
+    /**
+     * Stream the transactions ordered by id, reading them as they are requested downstream.
+     *
+     * @param status    the status to filter on, or {@code null}.
+     * @param type      the payment type to filter on, or {@code null}.
+     * @param batchSize the number of transactions read at once.
+     * @param fields    the fields to read.
+     * @return the entities.
+     */
+    Flux<Transaction> streamAll(Status status, PaymentType type, int batchSize, TransactionFields fields);
+
+    /**
+     * Get transactions of a status which were last updated before a date.
+     *
+     * @param status        the status.
+     * @param updatedBefore the exclusive bound of the last update date.
+     * @param size          the maximum number of transactions.
+     * @return the entities.
+     */
+    Flux<Transaction> findAllUpdatedBefore(Status status, Instant updatedBefore, int size);
+
+    Mono<Long> count();
+
+    /**
+     * Count the transactions without scanning them, if the store can.
+     *
+     * @return the estimated number of entities.
+     */
+    Mono<Long> estimatedCount();
+
+    Mono<Long> count(TransactionCriteria criteria);
+
+    /**
+     * Tell whether the filters of a query are bounded by an index of the store.
+     *
+     * @param criteria the filters.
+     * @return whether an index covers the filters.
+     */
+    boolean isIndexed(TransactionCriteria criteria);
+}
@@ -0,0 +1,97 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.Transaction;
+
+/**
+ * Outcome of the status transition of one transaction of a bulk transition.
+ */
+public final class TransitionOutcome {
+
+    public enum Result {
+        /**
+         * The transaction was moved to the new status.
+         */
+        UPDATED,
+        /**
+         * No transaction has the id.
+         */
+        NOT_FOUND,
+        /**
+         * The current status of the transaction cannot be moved to the new one.
+         */
+        NOT_ALLOWED,
+        /**
+         * The transaction was modified between its read and its update.
+         */
+        CONFLICT,
+        /**
+         * The write of the chunk of the transaction failed: it may or may not have been updated.
+         */
+        FAILED,
+        /**
+         * The chunk of the transaction got no write slot in time: it was not updated, and may be moved again later.
+         */
+        REJECTED,
+    }
+
+    private final String id;
+
+    private final Result result;
+
+    private final Transaction previous;
+
+    private final Transaction updated;
+
+    private TransitionOutcome(String id, Result result, Transaction previous, Transaction updated) {
+        this.id = id;
+        this.result = result;
+        this.previous = previous;
+        this.updated = updated;
+    }
+
+    public static TransitionOutcome updated(Transaction previous, Transaction updated) {
+        return new TransitionOutcome(updated.getId(), Result.UPDATED, previous, updated);
+    }
+
+    public static TransitionOutcome notFound(String id) {
+        return new TransitionOutcome(id, Result.NOT_FOUND, null, null);
+    }
+
+    public static TransitionOutcome notAllowed(Transaction previous) {
+        return new TransitionOutcome(previous.getId(), Result.NOT_ALLOWED, previous, null);
+    }
+
+    public static TransitionOutcome conflict(Transaction previous) {
+        return new TransitionOutcome(previous.getId(), Result.CONFLICT, previous, null);
+    }
+
+    public static TransitionOutcome failed(String id) {
+        return new TransitionOutcome(id, Result.FAILED, null, null);
+    }
+
+    public static TransitionOutcome rejected(String id) {
+        return new TransitionOutcome(id, Result.REJECTED, null, null);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return the transaction as it was read, or {@code null} if it was not found or not read.
+     */
+    public Transaction getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the updated transaction, or {@code null} if it was not updated.
+     */
+    public Transaction getUpdated() {
+        return updated;
+    }
+}
@@ -0,0 +1,403 @@
+package com.exercice.upstreampay.storage.archive;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.storage.log.TransactionCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An immutable file of archived transactions, sorted by id and grouped in deflated blocks:
+ * <pre>
+ * block*   deflate((id, length, transaction record)*)
+ * index    count, first id, last id, block count, (first id, offset, length, crc32)*, bloom filter words
+ * trailer  index offset (8 bytes), index length (4 bytes), index crc32 (4 bytes), magic (4 bytes)
+ * </pre>
+ * The index is sparse, with the first id of each block only, and is kept in memory: a lookup inflates a single
+ * block, and needs no read at all when the id is out of the range of the segment or rejected by its Bloom filter.
+ * <p>
+ * Reads are positional and may run concurrently.
+ */
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x55504131;
+
+    private static final int TRAILER_SIZE = 20;
+
+    private static final int BLOOM_BITS_PER_ID = 10;
+
+    private static final int BLOOM_HASHES = 7;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final long count;
+
+    private final String firstId;
+
+    private final String lastId;
+
+    private final String[] blockFirstIds;
+
+    private final long[] blockOffsets;
+
+    private final int[] blockLengths;
+
+    private final int[] blockChecksums;
+
+    private final long[] bloom;
+
+    private ArchiveSegment(Path path, FileChannel channel, DataInputStream index) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.count = index.readLong();
+        this.firstId = index.readUTF();
+        this.lastId = index.readUTF();
+        int blocks = index.readInt();
+        this.blockFirstIds = new String[blocks];
+        this.blockOffsets = new long[blocks];
+        this.blockLengths = new int[blocks];
+        this.blockChecksums = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockFirstIds[i] = index.readUTF();
+            blockOffsets[i] = index.readLong();
+            blockLengths[i] = index.readInt();
+            blockChecksums[i] = index.readInt();
+        }
+        this.bloom = new long[index.readInt()];
+        for (int i = 0; i < bloom.length; i++) {
+            bloom[i] = index.readLong();
+        }
+    }
+
+    /**
+     * Write a segment and force it to the disk.
+     *
+     * @param path         the file, which must not exist.
+     * @param transactions the transactions, with distinct ids; at least one.
+     * @param blockSize    the size from which a block is closed, before compression.
+     */
+    static void write(Path path, List<Transaction> transactions, int blockSize) throws IOException {
+        List<Transaction> sorted = new ArrayList<>(transactions);
+        sorted.sort(Comparator.comparing(Transaction::getId));
+        long[] bloom = new long[Math.max(1, (sorted.size() * BLOOM_BITS_PER_ID + 63) / 64)];
+        ByteArrayOutputStream blockIndexBytes = new ByteArrayOutputStream();
+        DataOutputStream blockIndex = new DataOutputStream(blockIndexBytes);
+        int blocks = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long offset = 0;
+            ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(blockSize + blockSize / 4);
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            String blockFirstId = null;
+            for (int i = 0; i < sorted.size(); i++) {
+                Transaction transaction = sorted.get(i);
+                byte[] record = TransactionCodec.encode(transaction);
+                if (blockFirstId == null) {
+                    blockFirstId = transaction.getId();
+                }
+                block.writeUTF(transaction.getId());
+                block.writeInt(record.length);
+                block.write(record);
+                addToBloom(bloom, transaction.getId());
+                if (blockBytes.size() >= blockSize || i == sorted.size() - 1) {
+                    byte[] compressed = deflate(blockBytes.toByteArray());
+                    blockIndex.writeUTF(blockFirstId);
+                    blockIndex.writeLong(offset);
+                    blockIndex.writeInt(compressed.length);
+                    blockIndex.writeInt(crc(compressed));
+                    offset += writeFully(channel, ByteBuffer.wrap(compressed), offset);
+                    blockBytes.reset();
+                    blockFirstId = null;
+                    blocks++;
+                }
+            }
+
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream(blockIndexBytes.size() + bloom.length * 8 + 64);
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            index.writeLong(sorted.size());
+            index.writeUTF(sorted.get(0).getId());
+            index.writeUTF(sorted.get(sorted.size() - 1).getId());
+            index.writeInt(blocks);
+            blockIndexBytes.writeTo(index);
+            index.writeInt(bloom.length);
+            for (long word : bloom) {
+                index.writeLong(word);
+            }
+            byte[] indexArray = indexBytes.toByteArray();
+            long indexOffset = offset;
+            offset += writeFully(channel, ByteBuffer.wrap(indexArray), offset);
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(indexOffset).putInt(indexArray.length).putInt(crc(indexArray)).putInt(MAGIC).flip();
+            writeFully(channel, trailer, offset);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Open a segment, reading its index.
+     */
+    static ArchiveSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < TRAILER_SIZE) {
+                throw new IOException("Archive segment " + path + " is truncated");
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            readFully(channel, trailer, size - TRAILER_SIZE, path);
+            trailer.flip();
+            long indexOffset = trailer.getLong();
+            int indexLength = trailer.getInt();
+            int indexChecksum = trailer.getInt();
+            if (trailer.getInt() != MAGIC || indexOffset < 0 || indexOffset + indexLength + TRAILER_SIZE != size) {
+                throw new IOException("Archive segment " + path + " has no valid trailer");
+            }
+            ByteBuffer index = ByteBuffer.allocate(indexLength);
+            readFully(channel, index, indexOffset, path);
+            if (crc(index.array()) != indexChecksum) {
+                throw new IOException("Archive segment " + path + " has a corrupt index");
+            }
+            return new ArchiveSegment(path, channel, new DataInputStream(new ByteArrayInputStream(index.array())));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    int blockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Tell whether the segment may hold a transaction, from the in-memory index only.
+     */
+    boolean mightContain(String id) {
+        return id.compareTo(firstId) >= 0 && id.compareTo(lastId) <= 0 && bloomContains(bloom, id);
+    }
+
+    /**
+     * Get a transaction.
+     *
+     * @return the transaction, or {@code null} if the segment does not hold it.
+     */
+    Transaction find(String id) throws IOException {
+        if (!mightContain(id)) {
+            return null;
+        }
+        int block = blockOf(id);
+        if (block < 0) {
+            return null;
+        }
+        try (DataInputStream in = inflate(block)) {
+            while (true) {
+                String recordId;
+                try {
+                    recordId = in.readUTF();
+                } catch (EOFException e) {
+                    return null;
+                }
+                int length = in.readInt();
+                int order = recordId.compareTo(id);
+                if (order == 0) {
+                    return TransactionCodec.decode(in.readNBytes(length));
+                }
+                if (order > 0) {
+                    return null;
+                }
+                skipFully(in, length);
+            }
+        }
+    }
+
+    /**
+     * Get transactions, inflating each block which may hold some of them once.
+     *
+     * @param ids the ids, sorted.
+     * @return the transactions the segment holds, in id order.
+     */
+    List<Transaction> findAll(List<String> ids) throws IOException {
+        List<Transaction> found = new ArrayList<>();
+        int start = 0;
+        while (start < ids.size()) {
+            int block = blockOf(ids.get(start));
+            String nextBlockFirstId = block + 1 < blockFirstIds.length ? blockFirstIds[block + 1] : null;
+            int end = start + 1;
+            while (end < ids.size() && (nextBlockFirstId == null || ids.get(end).compareTo(nextBlockFirstId) < 0)) {
+                end++;
+            }
+            List<String> wanted = new ArrayList<>();
+            for (String id : ids.subList(start, end)) {
+                if (block >= 0 && mightContain(id)) {
+                    wanted.add(id);
+                }
+            }
+            if (!wanted.isEmpty()) {
+                findAll(block, wanted, found);
+            }
+            start = end;
+        }
+        return found;
+    }
+
+    /**
+     * Merge the sorted ids with the records of a block.
+     */
+    private void findAll(int block, List<String> ids, List<Transaction> found) throws IOException {
+        int next = 0;
+        try (DataInputStream in = inflate(block)) {
+            while (next < ids.size()) {
+                String recordId;
+                try {
+                    recordId = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                int length = in.readInt();
+                while (next < ids.size() && ids.get(next).compareTo(recordId) < 0) {
+                    next++;
+                }
+                if (next < ids.size() && ids.get(next).equals(recordId)) {
+                    found.add(TransactionCodec.decode(in.readNBytes(length)));
+                    next++;
+                } else {
+                    skipFully(in, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read all the transactions of a block, in id order.
+     */
+    List<Transaction> readBlock(int block) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        try (DataInputStream in = inflate(block)) {
+            while (true) {
+                try {
+                    in.readUTF();
+                } catch (EOFException e) {
+                    return transactions;
+                }
+                transactions.add(TransactionCodec.decode(in.readNBytes(in.readInt())));
+            }
+        }
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return the block which may hold the id, or {@code -1} if the id is before the first one.
+     */
+    private int blockOf(String id) {
+        int block = Arrays.binarySearch(blockFirstIds, id);
+        return block < 0 ? -block - 2 : block;
+    }
+
+    private DataInputStream inflate(int block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(blockLengths[block]);
+        readFully(channel, compressed, blockOffsets[block], path);
+        if (crc(compressed.array()) != blockChecksums[block]) {
+            throw new IOException("Block " + block + " of the archive segment " + path + " is corrupt");
+        }
+        return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed.array())));
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = in.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new EOFException("Unexpected end of an archive block");
+            }
+            skipped += n;
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 3);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static void addToBloom(long[] bloom, String id) {
+        long hash = hash(id);
+        int bits = bloom.length * 64;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = Math.floorMod((int) hash + i * (int) (hash >>> 32), bits);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean bloomContains(long[] bloom, String id) {
+        long hash = hash(id);
+        int bits = bloom.length * 64;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = Math.floorMod((int) hash + i * (int) (hash >>> 32), bits);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a, whose halves are the two hashes combined by the Bloom filter.
+     */
+    private static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, Path path) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of archive segment " + path);
+            }
+            position += read;
+        }
+    }
+}
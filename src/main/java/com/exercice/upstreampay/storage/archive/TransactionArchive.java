@@ -0,0 +1,298 @@
+package com.exercice.upstreampay.storage.archive;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier of the transactions: the archived transactions, which are no longer in the {@code TransactionStore},
+ * kept in the immutable {@link ArchiveSegment} files of {@code application.archive.directory}.
+ * <p>
+ * A segment is first written as pending, then committed once its transactions are deleted from the store, keeping
+ * only the ones which were actually deleted. A pending segment left by a crash must be committed again from the
+ * state of the store. Lookups search the newest segments first, the pending ones included, since their
+ * transactions may already be deleted from the store; the pending segments are neither counted nor streamed.
+ */
+@Component
+public class TransactionArchive {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.arc(\\.pending)?");
+
+    private static final String PENDING_SUFFIX = ".pending";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Logger log = LoggerFactory.getLogger(TransactionArchive.class);
+
+    private final Path directory;
+
+    private final int blockSize;
+
+    private final ConcurrentSkipListMap<Long, ArchiveSegment> segments = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentSkipListMap<Long, ArchiveSegment> pending = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    public TransactionArchive(ApplicationProperties applicationProperties) throws IOException {
+        ApplicationProperties.Archive properties = applicationProperties.getArchive();
+        this.directory = Paths.get(properties.getDirectory());
+        this.blockSize = (int) properties.getBlockSize().toBytes();
+        if (Files.isDirectory(directory)) {
+            open();
+        }
+    }
+
+    /**
+     * Get an archived transaction.
+     *
+     * @param id the id of the transaction.
+     * @return the transaction, or empty if it is not archived.
+     */
+    public Mono<Transaction> findById(String id) {
+        if (readable().stream().noneMatch(segment -> segment.mightContain(id))) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+            try {
+                return find(id);
+            } catch (ClosedChannelException e) {
+                // a pending segment was committed meanwhile: its transactions are in the committed one
+                return find(id);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Transaction find(String id) throws IOException {
+        for (ArchiveSegment segment : readable()) {
+            if (segment.mightContain(id)) {
+                Transaction transaction = segment.find(id);
+                if (transaction != null) {
+                    return transaction;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get archived transactions, inflating each block which may hold some of them once.
+     *
+     * @param ids the ids of the transactions.
+     * @return the archived ones among them.
+     */
+    public Flux<Transaction> findAllById(Collection<String> ids) {
+        return Mono.fromCallable(() -> {
+            try {
+                return findAll(ids);
+            } catch (ClosedChannelException e) {
+                // a pending segment was committed meanwhile: its transactions are in the committed one
+                return findAll(ids);
+            }
+        }).subscribeOn(Schedulers.boundedElastic()).flatMapIterable(Function.identity());
+    }
+
+    private List<Transaction> findAll(Collection<String> ids) throws IOException {
+        TreeSet<String> remaining = new TreeSet<>(ids);
+        List<Transaction> found = new ArrayList<>();
+        for (ArchiveSegment segment : readable()) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            List<String> candidates = remaining.stream().filter(segment::mightContain).collect(Collectors.toList());
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            for (Transaction transaction : segment.findAll(candidates)) {
+                found.add(transaction);
+                remaining.remove(transaction.getId());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the committed and pending segments, the newest first.
+     */
+    private List<ArchiveSegment> readable() {
+        if (pending.isEmpty()) {
+            return new ArrayList<>(segments.descendingMap().values());
+        }
+        return Stream
+                .concat(segments.entrySet().stream(), pending.entrySet().stream())
+                .sorted(Map.Entry.<Long, ArchiveSegment>comparingByKey().reversed())
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stream the archived transactions, segment by segment from the oldest, each one ordered by id. A block is
+     * only read when the previous one is consumed downstream.
+     *
+     * @return the transactions.
+     */
+    public Flux<Transaction> streamAll() {
+        return Flux
+                .fromIterable(segments.values())
+                .concatMap(segment -> Flux
+                        .range(0, segment.blockCount())
+                        .concatMap(block -> Mono.fromCallable(() -> segment.readBlock(block)).subscribeOn(Schedulers.boundedElastic()), 1)
+                        .flatMapIterable(Function.identity()), 1);
+    }
+
+    /**
+     * @return the number of archived transactions.
+     */
+    public long count() {
+        return segments.values().stream().mapToLong(ArchiveSegment::count).sum();
+    }
+
+    /**
+     * Write transactions to a new pending segment.
+     *
+     * @param transactions the transactions, with distinct ids; at least one.
+     * @return the id of the pending segment.
+     */
+    public synchronized long prepare(List<Transaction> transactions) throws IOException {
+        Files.createDirectories(directory);
+        long id = nextId.getAndIncrement();
+        ArchiveSegment.write(pendingPath(id), transactions, blockSize);
+        pending.put(id, ArchiveSegment.open(pendingPath(id)));
+        return id;
+    }
+
+    /**
+     * Commit a pending segment, so that its transactions are read from the archive.
+     *
+     * @param id   the id of the pending segment.
+     * @param kept the transactions of the segment to keep, that is the ones deleted from the store.
+     */
+    public synchronized void commit(long id, List<Transaction> kept) throws IOException {
+        Path pendingPath = pendingPath(id);
+        Path path = path(id);
+        ArchiveSegment written = pending.get(id);
+        if (!kept.isEmpty()) {
+            if (written.count() != kept.size()) {
+                // a part of the transactions stayed in the store: the segment is written again without them
+                Path temporary = directory.resolve(path.getFileName() + TEMPORARY_SUFFIX);
+                Files.deleteIfExists(temporary);
+                ArchiveSegment.write(temporary, kept, blockSize);
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.move(pendingPath, path, StandardCopyOption.ATOMIC_MOVE);
+            }
+            segments.put(id, ArchiveSegment.open(path));
+        }
+        // the committed segment is read from now on
+        pending.remove(id);
+        written.close();
+        Files.deleteIfExists(pendingPath);
+    }
+
+    /**
+     * @return the ids of the pending segments left by a previous run.
+     */
+    public synchronized List<Long> pending() {
+        return new ArrayList<>(pending.keySet());
+    }
+
+    /**
+     * Read the transactions of a pending segment.
+     *
+     * @param id the id of the pending segment.
+     * @return the transactions, ordered by id.
+     */
+    public List<Transaction> readPending(long id) throws IOException {
+        ArchiveSegment segment = pending.get(id);
+        List<Transaction> transactions = new ArrayList<>((int) segment.count());
+        for (int block = 0; block < segment.blockCount(); block++) {
+            transactions.addAll(segment.readBlock(block));
+        }
+        return transactions;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (ArchiveSegment segment : segments.values()) {
+            segment.close();
+        }
+        for (ArchiveSegment segment : pending.values()) {
+            segment.close();
+        }
+    }
+
+    private void open() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(TEMPORARY_SUFFIX)) {
+                // an interrupted rewrite of a segment which is still pending
+                Files.delete(file);
+                continue;
+            }
+            Matcher matcher = SEGMENT_NAME.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            long id = Long.parseLong(matcher.group(1));
+            nextId.set(Math.max(nextId.get(), id + 1));
+            if (matcher.group(2) != null) {
+                if (Files.exists(path(id))) {
+                    // the segment was committed, but the pending file was not deleted yet
+                    Files.delete(file);
+                } else {
+                    openPending(id, file);
+                }
+            } else {
+                segments.put(id, ArchiveSegment.open(file));
+            }
+        }
+        log.info("Transaction archive opened: {} transactions in {} segments, {} pending", count(), segments.size(), pending.size());
+    }
+
+    private void openPending(long id, Path file) throws IOException {
+        try {
+            pending.put(id, ArchiveSegment.open(file));
+        } catch (IOException e) {
+            // the write of the segment was interrupted, before any of its transactions was deleted from the store
+            log.warn("Deleting the incomplete archive segment {}: {}", file, e.getMessage());
+            Files.delete(file);
+        }
+    }
+
+    private Path path(long id) {
+        return directory.resolve(String.format("%020d.arc", id));
+    }
+
+    private Path pendingPath(long id) {
+        return directory.resolve(String.format("%020d.arc", id) + PENDING_SUFFIX);
+    }
+}
@@ -0,0 +1,729 @@
+package com.exercice.upstreampay.storage.log;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.controller.error.BadRequestAlertException;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionCriteria;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import com.exercice.upstreampay.service.util.OrderLines;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.TransitionOutcome;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Embedded {@link TransactionStore} keeping the transactions in append-only segment files.
+ * <p>
+ * Every write appends the whole transaction to the active segment through a {@link java.nio.channels.FileChannel},
+ * and the in-memory indexes map each id to the offset of its last record and each status to its ids. At startup
+ * the segments are replayed in order to rebuild the indexes, and a torn record left by a crash is truncated.
+ * A delete appends a tombstone record, which stays live only while an older segment may hold a record of its
+ * transaction. The sealed segments in which at least {@code application.storage.log.compaction-min-garbage} of the
+ * bytes are overwritten or deleted records are compacted in the background: their live records and tombstones are
+ * copied to the active segment, then the file is deleted.
+ * <p>
+ * Writes are serialized, reads run concurrently. The file operations, compaction included, run on a dedicated
+ * executor which never interrupts them, since an interrupt would close the channel of the segment being read.
+ * <p>
+ * Pages are served from the indexes, so they can only be sorted by id, or by status then id.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.storage", name = "backend", havingValue = "log")
+public class LogTransactionStore implements TransactionStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{20}\\.log");
+
+    private static final int READ_BATCH_SIZE = 256;
+
+    private final Logger log = LoggerFactory.getLogger(LogTransactionStore.class);
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    private final boolean syncWrites;
+
+    private final double compactionMinGarbage;
+
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+
+    private final Map<Status, ConcurrentSkipListSet<String>> statusIndex = new EnumMap<>(Status.class);
+
+    private final Map<Status, AtomicLong> statusCounts = new EnumMap<>(Status.class);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final Map<String, Tombstone> tombstones = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object writeLock = new Object();
+
+    private final ExecutorService executor;
+
+    private final Scheduler scheduler;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private volatile Segment active;
+
+    public LogTransactionStore(ApplicationProperties applicationProperties) throws IOException {
+        ApplicationProperties.Storage.Log properties = applicationProperties.getStorage().getLog();
+        this.directory = Paths.get(properties.getDirectory());
+        this.segmentSize = properties.getSegmentSize().toBytes();
+        this.syncWrites = properties.isSyncWrites();
+        this.compactionMinGarbage = properties.getCompactionMinGarbage();
+        for (Status status : Status.values()) {
+            statusIndex.put(status, new ConcurrentSkipListSet<>());
+            statusCounts.put(status, new AtomicLong());
+        }
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "transaction-log-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Schedulers.fromExecutor(executor);
+        recover();
+    }
+
+    @Override
+    public Mono<Transaction> save(Transaction transaction) {
+        return write(() -> insert(transaction));
+    }
+
+    @Override
+    public Flux<Transaction> insertAll(List<Transaction> transactions) {
+        return write(() -> {
+            for (Transaction transaction : transactions) {
+                insert(transaction);
+            }
+            return transactions;
+        }).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Mono<Tuple2<Transaction, Transaction>> updateIfTransitionAllowed(Transaction transaction, Collection<Status> fromStatuses) {
+        return write(() -> {
+            Location location = index.get(transaction.getId());
+            if (location == null) {
+                return null;
+            }
+            Transaction previous = read(location);
+            if (!fromStatuses.contains(previous.getStatus())) {
+                return null;
+            }
+            if (transaction.getVersion() != null && !transaction.getVersion().equals(previous.getVersion())) {
+                return null;
+            }
+            boolean sameOrders = previous.getOrdersFingerprint() != null
+                    ? previous.getOrdersFingerprint().equals(transaction.getOrdersFingerprint())
+                    : OrderLines.sameLines(previous.getOrders(), transaction.getOrders());
+            if (!sameOrders) {
+                return null;
+            }
+            Transaction updated = previous
+                    .toBuilder()
+                    .price(transaction.getPrice())
+                    .type(transaction.getType())
+                    .status(transaction.getStatus())
+                    .orders(transaction.getOrders() == null ? List.of() : transaction.getOrders())
+                    .ordersFingerprint(transaction.getOrdersFingerprint())
+                    .updatedAt(Instant.now())
+                    .version(previous.getVersion() == null ? 1 : previous.getVersion() + 1)
+                    .build();
+            append(updated);
+            return Tuples.of(previous, updated);
+        });
+    }
+
+    @Override
+    public Flux<TransitionOutcome> transitionAll(List<String> ids, Status status, Collection<Status> fromStatuses) {
+        return write(() -> {
+            List<TransitionOutcome> outcomes = new ArrayList<>(ids.size());
+            Instant now = Instant.now();
+            for (String id : ids) {
+                Location location = index.get(id);
+                if (location == null) {
+                    outcomes.add(TransitionOutcome.notFound(id));
+                    continue;
+                }
+                Transaction previous = read(location);
+                if (!fromStatuses.contains(previous.getStatus())) {
+                    outcomes.add(TransitionOutcome.notAllowed(previous));
+                    continue;
+                }
+                Transaction updated = previous
+                        .toBuilder()
+                        .status(status)
+                        .updatedAt(now)
+                        .version(previous.getVersion() == null ? 1 : previous.getVersion() + 1)
+                        .build();
+                append(updated);
+                outcomes.add(TransitionOutcome.updated(previous, updated));
+            }
+            return outcomes;
+        }).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Flux<String> deleteAllUnchanged(List<Transaction> transactions) {
+        return write(() -> {
+            List<String> deleted = new ArrayList<>(transactions.size());
+            for (Transaction transaction : transactions) {
+                Location location = index.get(transaction.getId());
+                if (location == null || !Objects.equals(read(location).getVersion(), transaction.getVersion())) {
+                    continue;
+                }
+                ByteBuffer record = Segment.frame(TransactionCodec.encodeTombstone(transaction.getId()));
+                int length = record.remaining();
+                long offset = active.append(record);
+                indexTombstone(transaction.getId(), new Tombstone(active, offset, length, location.oldest));
+                rollIfFull();
+                deleted.add(transaction.getId());
+            }
+            return deleted;
+        }).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Mono<Transaction> findById(String id) {
+        return Mono.fromCallable(() -> read(id)).subscribeOn(scheduler);
+    }
+
+    /**
+     * The records are decoded whole: the fieldset is applied to the decoded transactions.
+     */
+    @Override
+    public Mono<Transaction> findById(String id, TransactionFields fields) {
+        return findById(id).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAllById(Collection<String> ids) {
+        return Mono.fromCallable(() -> readAll(ids)).subscribeOn(scheduler).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return Mono.fromSupplier(() -> index.containsKey(id));
+    }
+
+    @Override
+    public Flux<Transaction> findAll(Pageable pageable, TransactionFields fields) {
+        return query(null, null, pageable).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAll(TransactionCriteria criteria, Pageable pageable, TransactionFields fields) {
+        return query(criteria.getStatus(), documentFilter(criteria), pageable).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAllAfter(String lastId, int size, TransactionFields fields) {
+        NavigableSet<String> ids = lastId == null ? index.keySet() : index.tailMap(lastId, false).keySet();
+        return read(Flux.fromIterable(ids).take(size), size).map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> streamAll(Status status, PaymentType type, int batchSize, TransactionFields fields) {
+        return read(Flux.fromIterable(ids(status)), batchSize)
+                .filter(transaction -> (status == null || status == transaction.getStatus()) && (type == null || type == transaction.getType()))
+                .map(fields::project);
+    }
+
+    @Override
+    public Flux<Transaction> findAllUpdatedBefore(Status status, Instant updatedBefore, int size) {
+        return read(Flux.fromIterable(statusIndex.get(status)), READ_BATCH_SIZE)
+                .filter(transaction -> transaction.getUpdatedAt() != null && transaction.getUpdatedAt().isBefore(updatedBefore))
+                .take(size);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(count::get);
+    }
+
+    @Override
+    public Mono<Long> estimatedCount() {
+        return count();
+    }
+
+    @Override
+    public Mono<Long> count(TransactionCriteria criteria) {
+        Predicate<Transaction> filter = documentFilter(criteria);
+        if (filter == null) {
+            return criteria.getStatus() == null ? count() : Mono.fromSupplier(() -> statusCounts.get(criteria.getStatus()).get());
+        }
+        return read(Flux.fromIterable(ids(criteria.getStatus())), READ_BATCH_SIZE).filter(filter).count();
+    }
+
+    @Override
+    public boolean isIndexed(TransactionCriteria criteria) {
+        return criteria.getStatus() != null;
+    }
+
+    /**
+     * Start the compaction of the sealed segments holding enough overwritten records on the executor of the store,
+     * unless the previous one is still running.
+     */
+    @Scheduled(fixedDelayString = "${application.storage.log.compaction-interval:PT5M}")
+    public void scheduleCompaction() {
+        if (compacting.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        compact();
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Compact the sealed segments holding enough overwritten records, on the calling thread.
+     */
+    void compact() {
+        for (Segment segment : segments.values()) {
+            if (segment == active) {
+                continue;
+            }
+            double garbage = 1 - (double) segment.liveBytes() / Math.max(1, segment.size());
+            if (garbage >= compactionMinGarbage) {
+                try {
+                    compact(segment);
+                } catch (IOException e) {
+                    log.error("Could not compact the transaction segment {}", segment.getId(), e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        executor.shutdown();
+        synchronized (writeLock) {
+            active.force();
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches()).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            long id = Long.parseLong(file.getFileName().toString().substring(0, 20));
+            Segment segment = Segment.open(id, file);
+            segments.put(id, segment);
+            long end = segment.scan((offset, length, payload) -> {
+                if (TransactionCodec.isTombstone(payload)) {
+                    String deleted = TransactionCodec.decodeId(payload);
+                    Location location = index.get(deleted);
+                    Tombstone previous = tombstones.get(deleted);
+                    if (location != null || previous != null) {
+                        long oldest = location != null ? location.oldest : previous.oldest;
+                        indexTombstone(deleted, new Tombstone(segment, offset, length, oldest));
+                    }
+                    return;
+                }
+                Transaction transaction = TransactionCodec.decode(payload);
+                indexRecord(transaction.getId(), segment, offset, length, transaction.getStatus());
+            });
+            if (end < segment.size()) {
+                log.warn("Transaction segment {} ends with a torn or corrupt record, {} bytes dropped", file, segment.size() - end);
+                segment.truncate(end);
+            }
+        }
+        active = segments.isEmpty() ? newSegment(0) : segments.lastEntry().getValue();
+        if (active.size() >= segmentSize) {
+            roll();
+        }
+        log.info("Transaction log recovered: {} transactions in {} segments", count.get(), segments.size());
+    }
+
+    private void compact(Segment segment) throws IOException {
+        long sizeBefore = segment.size();
+        AtomicLong moved = new AtomicLong();
+        segment.scan((offset, length, payload) -> {
+            if (TransactionCodec.isTombstone(payload)) {
+                if (moveTombstone(segment, offset, payload, length)) {
+                    moved.incrementAndGet();
+                }
+                return;
+            }
+            String id = TransactionCodec.decodeId(payload);
+            Location location = index.get(id);
+            if (location == null || location.segment != segment || location.offset != offset) {
+                return;
+            }
+            synchronized (writeLock) {
+                if (index.get(id) != location) {
+                    return;
+                }
+                long newOffset = active.append(Segment.frame(payload));
+                indexRecord(id, active, newOffset, length, location.status);
+                rollIfFull();
+            }
+            moved.incrementAndGet();
+        });
+        synchronized (writeLock) {
+            active.force();
+            segments.remove(segment.getId());
+            segment.delete();
+            releaseTombstones();
+        }
+        log.info("Transaction segment {} compacted: {} records moved, {} bytes reclaimed", segment.getId(), moved.get(), sizeBefore);
+    }
+
+    /**
+     * Copy a tombstone to the active segment if it is still live: when it is the last one of its transaction and an
+     * older segment may hold a record of that transaction.
+     *
+     * @return whether the tombstone was copied.
+     */
+    private boolean moveTombstone(Segment segment, long offset, byte[] payload, int length) throws IOException {
+        synchronized (writeLock) {
+            String id = TransactionCodec.decodeId(payload);
+            Tombstone tombstone = tombstones.get(id);
+            if (tombstone == null || tombstone.segment != segment || tombstone.offset != offset) {
+                return false;
+            }
+            long newOffset = active.append(Segment.frame(payload));
+            indexTombstone(id, new Tombstone(active, newOffset, length, tombstone.oldest));
+            rollIfFull();
+            return true;
+        }
+    }
+
+    /**
+     * Stop counting as live the tombstones which no longer hide any record, once a segment was deleted.
+     */
+    private void releaseTombstones() {
+        tombstones.values().removeIf(tombstone -> {
+            if (hidesRecords(tombstone)) {
+                return false;
+            }
+            tombstone.segment.addLiveBytes(-tombstone.length);
+            return true;
+        });
+    }
+
+    /**
+     * Record the tombstone of a transaction, in place of its record or of its previous tombstone. It is only kept
+     * and counted as live while it hides records.
+     */
+    private void indexTombstone(String id, Tombstone tombstone) {
+        unindexRecord(id);
+        Tombstone previous = tombstones.remove(id);
+        if (previous != null) {
+            previous.segment.addLiveBytes(-previous.length);
+        }
+        if (hidesRecords(tombstone)) {
+            tombstones.put(id, tombstone);
+            tombstone.segment.addLiveBytes(tombstone.length);
+        }
+    }
+
+    /**
+     * Whether a segment older than the tombstone, and not older than the first record of its transaction, remains.
+     */
+    private boolean hidesRecords(Tombstone tombstone) {
+        return !segments.subMap(tombstone.oldest, true, tombstone.segment.getId(), false).isEmpty();
+    }
+
+    private <T> Mono<T> write(IoCallable<T> operation) {
+        return Mono.fromCallable(() -> {
+            synchronized (writeLock) {
+                T result = operation.call();
+                if (syncWrites) {
+                    active.force();
+                }
+                return result;
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    private Transaction insert(Transaction transaction) throws IOException {
+        if (transaction.getId() == null) {
+            transaction.setId(ObjectId.get().toHexString());
+        } else if (index.containsKey(transaction.getId())) {
+            throw new DuplicateKeyException("Transaction " + transaction.getId() + " already exists");
+        }
+        Instant now = Instant.now();
+        transaction.setCreatedAt(now);
+        transaction.setUpdatedAt(now);
+        transaction.setVersion(0L);
+        append(transaction);
+        return transaction;
+    }
+
+    private void append(Transaction transaction) throws IOException {
+        ByteBuffer record = Segment.frame(TransactionCodec.encode(transaction));
+        int length = record.remaining();
+        long offset = active.append(record);
+        indexRecord(transaction.getId(), active, offset, length, transaction.getStatus());
+        rollIfFull();
+    }
+
+    /**
+     * Index the last record of a transaction. A record hides all the previous ones of its transaction, so it
+     * replaces its tombstone, and inherits the oldest segment which may hold one of them.
+     */
+    private void indexRecord(String id, Segment segment, long offset, int length, Status status) {
+        Location current = index.get(id);
+        Tombstone tombstone = current == null ? tombstones.remove(id) : null;
+        if (tombstone != null) {
+            tombstone.segment.addLiveBytes(-tombstone.length);
+        }
+        long oldest = current != null ? current.oldest : tombstone != null ? tombstone.oldest : segment.getId();
+        Location location = new Location(segment, offset, length, status, oldest);
+        Location previous = index.put(id, location);
+        location.segment.addLiveBytes(location.length);
+        if (previous == null) {
+            count.incrementAndGet();
+        } else {
+            previous.segment.addLiveBytes(-previous.length);
+            if (previous.status != null && previous.status != location.status) {
+                statusIndex.get(previous.status).remove(id);
+                statusCounts.get(previous.status).decrementAndGet();
+            }
+        }
+        if (location.status != null && (previous == null || previous.status != location.status)) {
+            statusIndex.get(location.status).add(id);
+            statusCounts.get(location.status).incrementAndGet();
+        }
+    }
+
+    private void unindexRecord(String id) {
+        Location previous = index.remove(id);
+        if (previous == null) {
+            return;
+        }
+        count.decrementAndGet();
+        previous.segment.addLiveBytes(-previous.length);
+        if (previous.status != null) {
+            statusIndex.get(previous.status).remove(id);
+            statusCounts.get(previous.status).decrementAndGet();
+        }
+    }
+
+    private void rollIfFull() throws IOException {
+        if (active.size() >= segmentSize) {
+            roll();
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force();
+        active = newSegment(active.getId() + 1);
+    }
+
+    private Segment newSegment(long id) throws IOException {
+        Segment segment = Segment.open(id, directory.resolve(String.format("%020d.log", id)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Transaction read(String id) throws IOException {
+        while (true) {
+            Location location = index.get(id);
+            if (location == null) {
+                return null;
+            }
+            try {
+                return read(location);
+            } catch (ClosedChannelException e) {
+                // the segment was compacted meanwhile: read the record where it was moved
+                if (index.get(id) == location) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static Transaction read(Location location) throws IOException {
+        return TransactionCodec.decode(location.segment.read(location.offset, location.length));
+    }
+
+    private List<Transaction> readAll(Collection<String> ids) throws IOException {
+        List<Transaction> transactions = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Transaction transaction = read(id);
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+
+    private Flux<Transaction> read(Flux<String> ids, int batchSize) {
+        return ids
+                .buffer(batchSize)
+                .concatMap(batch -> Mono.fromCallable(() -> readAll(batch)).subscribeOn(scheduler))
+                .flatMapIterable(Function.identity());
+    }
+
+    private NavigableSet<String> ids(Status status) {
+        return status == null ? index.keySet() : statusIndex.get(status);
+    }
+
+    /**
+     * Get a page of the transactions with the given status, or of all of them. The ids are read in order from the
+     * indexes, so that only the transactions of the page, or the ones tested by the filter, are read.
+     */
+    private Flux<Transaction> query(Status status, Predicate<Transaction> filter, Pageable pageable) {
+        Flux<String> ordered = Flux.defer(() -> orderedIds(status, pageable.getSort()));
+        int batchSize = pageable.isPaged() ? Math.min(pageable.getPageSize(), READ_BATCH_SIZE) : READ_BATCH_SIZE;
+        if (filter == null) {
+            return read(page(ordered, pageable), batchSize);
+        }
+        return page(read(ordered, batchSize).filter(filter), pageable);
+    }
+
+    /**
+     * The ids with the given status, or all of them, sorted by id, or by status then id: the status index holds
+     * the ids of each status in order.
+     */
+    private Flux<String> orderedIds(Status status, Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        Sort.Order byStatus = !orders.isEmpty() && orders.get(0).getProperty().equals("status") ? orders.get(0) : null;
+        List<Sort.Order> idOrders = byStatus == null ? orders : orders.subList(1, orders.size());
+        if (idOrders.size() > 1 || (idOrders.size() == 1 && !idOrders.get(0).getProperty().equals("id"))) {
+            throw new BadRequestAlertException("Transactions can only be sorted by id, or by status then id", "Transaction", "sortnotsupported");
+        }
+        boolean idDescending = idOrders.size() == 1 && idOrders.get(0).isDescending();
+        if (byStatus == null || status != null) {
+            NavigableSet<String> ids = ids(status);
+            return Flux.fromIterable(idDescending ? ids.descendingSet() : ids);
+        }
+        Comparator<Status> byName = Comparator.comparing(Status::name);
+        List<Status> statuses = Stream.of(Status.values())
+                .sorted(byStatus.isDescending() ? byName.reversed() : byName)
+                .collect(Collectors.toList());
+        return Flux.fromIterable(statuses).concatMap(next -> {
+            NavigableSet<String> ids = statusIndex.get(next);
+            return Flux.fromIterable(idDescending ? ids.descendingSet() : ids);
+        });
+    }
+
+    private static <T> Flux<T> page(Flux<T> elements, Pageable pageable) {
+        return pageable.isUnpaged() ? elements : elements.skip(pageable.getOffset()).take(pageable.getPageSize());
+    }
+
+    /**
+     * The filters which need the transactions to be read, or {@code null} if the ids of the status suffice.
+     */
+    private static Predicate<Transaction> documentFilter(TransactionCriteria criteria) {
+        if (criteria.getType() == null && criteria.getCreatedFrom() == null && criteria.getCreatedTo() == null
+                && criteria.getMinPrice() == null && criteria.getMaxPrice() == null) {
+            return null;
+        }
+        return transaction -> {
+            Instant createdAt = transaction.getCreatedAt();
+            return (criteria.getStatus() == null || criteria.getStatus() == transaction.getStatus())
+                    && (criteria.getType() == null || criteria.getType() == transaction.getType())
+                    && (criteria.getCreatedFrom() == null || (createdAt != null && !createdAt.isBefore(criteria.getCreatedFrom())))
+                    && (criteria.getCreatedTo() == null || (createdAt != null && createdAt.isBefore(criteria.getCreatedTo())))
+                    && (criteria.getMinPrice() == null || transaction.getPrice() >= criteria.getMinPrice())
+                    && (criteria.getMaxPrice() == null || transaction.getPrice() <= criteria.getMaxPrice());
+        };
+    }
+
+    @FunctionalInterface
+    private interface IoCallable<T> {
+        T call() throws IOException;
+    }
+
+    private static final class Location {
+
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+        private final Status status;
+        /**
+         * The oldest segment which may hold a record of the transaction.
+         */
+        private final long oldest;
+
+        private Location(Segment segment, long offset, int length, Status status, long oldest) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.status = status;
+            this.oldest = oldest;
+        }
+    }
+
+    private static final class Tombstone {
+
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+        /**
+         * The oldest segment which may hold a record of the deleted transaction.
+         */
+        private final long oldest;
+
+        private Tombstone(Segment segment, long offset, int length, long oldest) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.oldest = oldest;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.exercice.upstreampay.storage.log;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of records. Each record is its length, the CRC32 of its payload, and the payload.
+ * <p>
+ * Appends must be serialized by the caller; reads are positional and may run concurrently with them.
+ */
+final class Segment {
+
+    static final int HEADER_SIZE = 8;
+
+    interface RecordConsumer {
+        void accept(long offset, int length, byte[] payload) throws IOException;
+    }
+
+    private final long id;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final AtomicLong size;
+
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    private Segment(long id, Path path, FileChannel channel) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = new AtomicLong(channel.size());
+    }
+
+    static Segment open(long id, Path path) throws IOException {
+        return new Segment(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    static ByteBuffer frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    long liveBytes() {
+        return liveBytes.get();
+    }
+
+    void addLiveBytes(long delta) {
+        liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Append a framed record.
+     *
+     * @return the offset of the record.
+     */
+    long append(ByteBuffer record) throws IOException {
+        long offset = size.get();
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size.set(position);
+        return offset;
+    }
+
+    /**
+     * Read the payload of the record at an offset.
+     */
+    byte[] read(long offset, int length) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(record, offset);
+        record.flip();
+        record.position(HEADER_SIZE);
+        byte[] payload = new byte[length - HEADER_SIZE];
+        record.get(payload);
+        return payload;
+    }
+
+    /**
+     * Read the records from the start of the segment, stopping at the first incomplete or corrupt one.
+     *
+     * @return the offset following the last valid record.
+     */
+    long scan(RecordConsumer consumer) throws IOException {
+        long end = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_SIZE <= end) {
+            header.clear();
+            readFully(header, offset);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || offset + HEADER_SIZE + length > end) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, offset + HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            consumer.accept(offset, HEADER_SIZE + length, payload.array());
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Drop a torn tail left by a crash.
+     */
+    void truncate(long length) throws IOException {
+        channel.truncate(length);
+        size.set(length);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of segment " + path);
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.exercice.upstreampay.storage.log;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of the transactions in the log segments and in the archive segments. Enumerations are written
+ * by name, so that reordering their constants does not change the meaning of existing segments.
+ * <p>
+ * A deleted transaction is a tombstone record, holding only its id.
+ * <p>
+ * The strings are written as their UTF-8 length followed by their bytes, with no limit on their size.
+ */
+public final class TransactionCodec {
+
+    private static final byte FORMAT = 1;
+
+    private static final byte TOMBSTONE = 2;
+
+    private TransactionCodec() {
+    }
+
+    public static byte[] encode(Transaction transaction) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            writeString(out, transaction.getId());
+            out.writeDouble(transaction.getPrice());
+            writeString(out, transaction.getType() == null ? null : transaction.getType().name());
+            writeString(out, transaction.getStatus() == null ? null : transaction.getStatus().name());
+            List<OrderLine> orders = transaction.getOrders();
+            out.writeInt(orders == null ? -1 : orders.size());
+            if (orders != null) {
+                for (OrderLine line : orders) {
+                    writeString(out, line.getProductName());
+                    out.writeInt(line.getQuantity());
+                    out.writeDouble(line.getPrice());
+                }
+            }
+            writeString(out, transaction.getOrdersFingerprint());
+            writeInstant(out, transaction.getCreatedAt());
+            writeInstant(out, transaction.getUpdatedAt());
+            out.writeBoolean(transaction.getVersion() != null);
+            if (transaction.getVersion() != null) {
+                out.writeLong(transaction.getVersion());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Transaction decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte format = in.readByte();
+            if (format != FORMAT) {
+                throw new IOException("Unknown transaction record format " + format);
+            }
+            Transaction transaction = new Transaction();
+            transaction.setId(readString(in));
+            transaction.setPrice(in.readDouble());
+            String type = readString(in);
+            transaction.setType(type == null ? null : PaymentType.valueOf(type));
+            String status = readString(in);
+            transaction.setStatus(status == null ? null : Status.valueOf(status));
+            int lines = in.readInt();
+            if (lines >= 0) {
+                List<OrderLine> orders = new ArrayList<>(lines);
+                for (int i = 0; i < lines; i++) {
+                    orders.add(new OrderLine(readString(in), in.readInt(), in.readDouble()));
+                }
+                transaction.setOrders(orders);
+            }
+            transaction.setOrdersFingerprint(readString(in));
+            transaction.setCreatedAt(readInstant(in));
+            transaction.setUpdatedAt(readInstant(in));
+            if (in.readBoolean()) {
+                transaction.setVersion(in.readLong());
+            }
+            return transaction;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static byte[] encodeTombstone(String id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TOMBSTONE);
+            writeString(out, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static boolean isTombstone(byte[] payload) {
+        return payload.length > 0 && payload[0] == TOMBSTONE;
+    }
+
+    /**
+     * Read only the id of a transaction or of a tombstone.
+     */
+    static String decodeId(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readByte();
+            return readString(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = in.readNBytes(length);
+        if (utf8.length != length) {
+            throw new EOFException("Truncated string in a transaction record");
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
@@ -0,0 +1,84 @@
+package com.exercice.upstreampay.controller.filter;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.service.limit.ConcurrencyLimitExceededException;
+import com.exercice.upstreampay.service.limit.TransactionLimiters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    private TransactionLimiters limiters;
+
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getLimit().setEnabled(true);
+        properties.getLimit().getRead().setInitialLimit(1);
+        properties.getLimit().getRead().setMinLimit(1);
+        limiters = new TransactionLimiters(properties);
+        filter = new ConcurrencyLimitFilter(limiters);
+    }
+
+    @Test
+    void theExportStreamGivesItsSlotBackOnceItsFirstItemsAreWritten() {
+        Sinks.Many<DataBuffer> items = Sinks.many().unicast().onBackpressureBuffer();
+        MockServerWebExchange export = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions/stream"));
+
+        Disposable stream = filter.filter(export, exchange -> exchange.getResponse().writeWith(items.asFlux())).subscribe();
+        assertThat(limiters.get(TransactionLimiters.Kind.READ).getInFlight()).isEqualTo(1);
+
+        items.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap("{}\n".getBytes(StandardCharsets.UTF_8)));
+
+        // the stream goes on, but another read is admitted
+        assertThat(limiters.get(TransactionLimiters.Kind.READ).getInFlight()).isZero();
+        MockServerWebExchange read = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions"));
+        StepVerifier.create(filter.filter(read, exchange -> Mono.empty())).verifyComplete();
+
+        items.tryEmitComplete();
+        stream.dispose();
+        assertThat(limiters.get(TransactionLimiters.Kind.READ).getInFlight()).isZero();
+    }
+
+    @Test
+    void aReadHoldsItsSlotUntilItEnds() {
+        Sinks.Empty<Void> end = Sinks.empty();
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions"));
+        Disposable running = filter.filter(first, exchange -> end.asMono()).subscribe();
+
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions"));
+        StepVerifier.create(filter.filter(second, exchange -> Mono.empty()))
+                .expectError(ConcurrencyLimitExceededException.class)
+                .verify();
+
+        end.tryEmitEmpty();
+        running.dispose();
+        assertThat(limiters.get(TransactionLimiters.Kind.READ).getInFlight()).isZero();
+    }
+
+    @Test
+    void theBatchInsertsAreLeftToTheService() {
+        Sinks.Empty<Void> end = Sinks.empty();
+        MockServerWebExchange batch = MockServerWebExchange.from(MockServerHttpRequest.post("/api/transactions/batch"));
+
+        Disposable running = filter.filter(batch, exchange -> end.asMono()).subscribe();
+
+        assertThat(limiters.get(TransactionLimiters.Kind.WRITE).getInFlight()).isZero();
+        end.tryEmitEmpty();
+        running.dispose();
+    }
+}
@@ -0,0 +1,49 @@
+package com.exercice.upstreampay.controller.utils;
+
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagUtilTest {
+
+    @Test
+    void theTagOfAListDependsOnTheIdsAndVersions() {
+        Transaction first = Transaction.builder().id("1").price(10).status(Status.NEW).version(0L).build();
+        Transaction second = Transaction.builder().id("2").price(20).status(Status.NEW).version(3L).build();
+        String tag = ETagUtil.list(List.of(first, second), 2, TransactionFields.ALL);
+
+        // the same versions read again, such as a partial read of the same transactions
+        Transaction sameVersion = Transaction.builder().id("2").version(3L).build();
+        assertThat(ETagUtil.list(List.of(first, sameVersion), 2, TransactionFields.ALL)).isEqualTo(tag);
+
+        assertThat(ETagUtil.list(List.of(first, second.toBuilder().version(4L).build()), 2, TransactionFields.ALL)).isNotEqualTo(tag);
+        assertThat(ETagUtil.list(List.of(second, first), 2, TransactionFields.ALL)).isNotEqualTo(tag);
+        assertThat(ETagUtil.list(List.of(first, second), 3, TransactionFields.ALL)).isNotEqualTo(tag);
+        assertThat(ETagUtil.list(List.of(first, second), 2, TransactionFields.parse("price"))).isNotEqualTo(tag);
+    }
+
+    @Test
+    void theTagOfATransactionIsItsVersion() {
+        assertThat(ETagUtil.transaction(3L, TransactionFields.ALL)).isEqualTo("W/\"3\"");
+        assertThat(ETagUtil.version("W/\"3\"")).isEqualTo(3L);
+        assertThat(ETagUtil.version("\"3\"")).isEqualTo(3L);
+        assertThat(ETagUtil.transaction(3L, TransactionFields.parse("price,status")))
+                .startsWith("W/\"3-")
+                .isEqualTo(ETagUtil.transaction(3L, TransactionFields.parse("status,price")));
+        assertThat(ETagUtil.version(ETagUtil.transaction(3L, TransactionFields.parse("price")))).isNull();
+        assertThat(ETagUtil.transaction(null, TransactionFields.ALL)).isNull();
+    }
+
+    @Test
+    void ifNoneMatchIsComparedWeakly() {
+        assertThat(ETagUtil.matches("\"1\", W/\"3\"", "W/\"3\"")).isTrue();
+        assertThat(ETagUtil.matches("\"3\"", "W/\"3\"")).isTrue();
+        assertThat(ETagUtil.matches("*", "W/\"3\"")).isTrue();
+        assertThat(ETagUtil.matches("\"1\"", "W/\"3\"")).isFalse();
+    }
+}
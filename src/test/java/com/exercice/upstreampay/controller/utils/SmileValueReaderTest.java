@@ -0,0 +1,85 @@
+package com.exercice.upstreampay.controller.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmileValueReaderTest {
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    @Test
+    void readsConcatenatedValuesSplitAcrossBuffers() throws IOException {
+        byte[] stream = concat(smile("{\"price\":1}"), smile("{\"price\":2,\"orders\":[{\"quantity\":3}]}"), smile("{\"price\":3}"));
+
+        StepVerifier.create(SmileValueReader.read(buffers(stream, 7)).map(this::toJson))
+                .expectNext("{\"price\":1}", "{\"price\":2,\"orders\":[{\"quantity\":3}]}", "{\"price\":3}")
+                .verifyComplete();
+    }
+
+    @Test
+    void emitsTheValuesBeforeAnInvalidOne() throws IOException {
+        byte[] stream = concat(smile("{\"price\":1}"), smile("{\"price\":2}"), new byte[] { ':', ')', '\n', 0, (byte) 0xfa, (byte) 0xf8 });
+
+        // a single buffer, as when the whole body arrives at once
+        StepVerifier.create(SmileValueReader.read(buffers(stream, stream.length)).map(this::toJson))
+                .expectNext("{\"price\":1}", "{\"price\":2}")
+                .expectError(IOException.class)
+                .verify();
+    }
+
+    @Test
+    void failsOnATruncatedValue() throws IOException {
+        byte[] value = smile("{\"price\":2}");
+        byte[] stream = concat(smile("{\"price\":1}"), Arrays.copyOf(value, value.length - 2));
+
+        StepVerifier.create(SmileValueReader.read(buffers(stream, 5)).map(this::toJson))
+                .expectNext("{\"price\":1}")
+                .expectError(IOException.class)
+                .verify();
+    }
+
+    private String toJson(TokenBuffer value) {
+        try {
+            return jsonMapper.writeValueAsString(jsonMapper.readValue(value.asParser(jsonMapper), JsonNode.class));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] smile(String json) throws IOException {
+        return smileMapper.writeValueAsBytes(jsonMapper.readTree(json));
+    }
+
+    private static byte[] concat(byte[]... values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] value : values) {
+            out.write(value);
+        }
+        return out.toByteArray();
+    }
+
+    private static Flux<DataBuffer> buffers(byte[] stream, int size) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < stream.length; offset += size) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(stream, offset, Math.min(stream.length, offset + size))));
+        }
+        return Flux.fromIterable(buffers);
+    }
+}
@@ -0,0 +1,95 @@
+package com.exercice.upstreampay.repository;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.util.OrderLines;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionRepositoryCustomImplTest {
+
+    private static final OrderLine SHOES = new OrderLine("shoes", 1, 50);
+    private static final OrderLine SOCKS = new OrderLine("socks", 2, 5.5);
+
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private TransactionRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        repository = new TransactionRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @Test
+    void aTransactionWithoutFingerprintIsNotUpdatedWithOtherMultiplicities() {
+        // no fingerprint matches, so only the unfingerprinted transaction is left
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Transaction.class)))
+                .thenReturn(Mono.empty());
+        when(mongoTemplate.findOne(any(Query.class), eq(Transaction.class))).thenReturn(Mono.just(stored(List.of(SHOES, SOCKS, SOCKS))));
+
+        StepVerifier.create(repository.updateIfTransitionAllowed(given(List.of(SHOES, SHOES, SOCKS)), List.of(Status.NEW)))
+                .verifyComplete();
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Transaction.class));
+    }
+
+    @Test
+    void aTransactionWithoutFingerprintIsUpdatedIfUnchangedSinceRead() {
+        Transaction stored = stored(List.of(SOCKS, SHOES));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Transaction.class)))
+                .thenReturn(Mono.empty(), Mono.just(stored));
+        when(mongoTemplate.findOne(any(Query.class), eq(Transaction.class))).thenReturn(Mono.just(stored));
+
+        StepVerifier.create(repository.updateIfTransitionAllowed(given(List.of(SHOES, SOCKS)), List.of(Status.NEW)))
+                .assertNext(previousAndUpdated -> {
+                    assertThat(previousAndUpdated.getT2().getStatus()).isEqualTo(Status.AUTHORIZED);
+                    assertThat(previousAndUpdated.getT2().getOrdersFingerprint()).isEqualTo(OrderLines.fingerprint(List.of(SHOES, SOCKS)));
+                })
+                .verifyComplete();
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).findAndModify(queries.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Transaction.class));
+        Document unchanged = queries.getAllValues().get(1).getQueryObject();
+        assertThat(unchanged.get("version")).isEqualTo(3L);
+        assertThat(unchanged.get("status")).isEqualTo(Status.NEW);
+        assertThat(unchanged.get("ordersFingerprint", Document.class)).isEqualTo(new Document("$exists", false));
+    }
+
+    private static Transaction stored(List<OrderLine> orders) {
+        Transaction transaction = new Transaction();
+        transaction.setId("1");
+        transaction.setPrice(61);
+        transaction.setType(PaymentType.PAYPAL);
+        transaction.setStatus(Status.NEW);
+        transaction.setOrders(orders);
+        transaction.setVersion(3L);
+        return transaction;
+    }
+
+    private static Transaction given(List<OrderLine> orders) {
+        Transaction transaction = stored(orders);
+        transaction.setStatus(Status.AUTHORIZED);
+        transaction.setVersion(null);
+        transaction.setOrdersFingerprint(OrderLines.fingerprint(orders));
+        return transaction;
+    }
+}
@@ -0,0 +1,123 @@
+package com.exercice.upstreampay.service.archive;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.cache.TransactionCache;
+import com.exercice.upstreampay.service.count.TransactionCounter;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.archive.TransactionArchive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.exercice.upstreampay.storage.TransactionFixtures.capturedTransactions;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionArchiverTest {
+
+    @TempDir
+    Path directory;
+
+    private ApplicationProperties properties;
+
+    private TransactionStore transactionStore;
+
+    private TransactionCounter transactionCounter;
+
+    private TransactionArchive transactionArchive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new ApplicationProperties();
+        properties.getArchive().setEnabled(true);
+        properties.getArchive().setDirectory(directory.toString());
+        transactionStore = mock(TransactionStore.class);
+        transactionCounter = mock(TransactionCounter.class);
+        when(transactionStore.findAllUpdatedBefore(eq(Status.CAPTURED), any(), anyInt())).thenReturn(Flux.empty());
+        transactionArchive = new TransactionArchive(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        transactionArchive.close();
+    }
+
+    @Test
+    void aSegmentLeftPendingByACrashKeepsTheTransactionsDeletedFromTheStore() throws IOException {
+        List<Transaction> transactions = capturedTransactions(5);
+        long segment = transactionArchive.prepare(transactions);
+        // the crash happened while deleting: the last two transactions are still in the store
+        List<Transaction> remaining = transactions.subList(3, 5);
+        when(transactionStore.findAllById(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return Flux.fromIterable(remaining).filter(transaction -> ids.contains(transaction.getId()));
+        });
+        transactionArchive.close();
+        transactionArchive = new TransactionArchive(properties);
+        assertThat(transactionArchive.pending()).containsExactly(segment);
+
+        archiver().archive();
+
+        assertThat(transactionArchive.pending()).isEmpty();
+        assertThat(transactionArchive.count()).isEqualTo(3);
+        List<String> ids = transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+        assertThat(transactionArchive.findAllById(ids).collectList().block()).containsExactlyInAnyOrderElementsOf(transactions.subList(0, 3));
+    }
+
+    @Test
+    void theTransactionsArchivedByAnInterruptedRunAreOnlyDeleted() throws IOException {
+        List<Transaction> transactions = capturedTransactions(4);
+        List<Transaction> alreadyArchived = transactions.subList(0, 2);
+        transactionArchive.commit(transactionArchive.prepare(alreadyArchived), alreadyArchived);
+        when(transactionStore.findAllUpdatedBefore(eq(Status.CAPTURED), any(), anyInt())).thenReturn(Flux.fromIterable(transactions));
+        when(transactionStore.deleteAllUnchanged(anyList())).thenAnswer(invocation -> Flux
+                .fromIterable(invocation.<List<Transaction>>getArgument(0))
+                .map(Transaction::getId));
+
+        archiver().archive();
+
+        assertThat(transactionArchive.count()).isEqualTo(4);
+        List<String> ids = transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+        assertThat(transactionArchive.findAllById(ids).collectList().block()).containsExactlyInAnyOrderElementsOf(transactions);
+        verify(transactionCounter).removed(4);
+    }
+
+    @Test
+    void theTransactionsStayReadableWhileTheyAreDeletedFromTheStore() {
+        List<Transaction> transactions = capturedTransactions(3);
+        List<String> ids = transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+        List<Transaction> readWhileDeleting = new ArrayList<>();
+        when(transactionStore.findAllUpdatedBefore(eq(Status.CAPTURED), any(), anyInt())).thenReturn(Flux.fromIterable(transactions));
+        when(transactionStore.deleteAllUnchanged(anyList())).thenAnswer(invocation -> {
+            readWhileDeleting.addAll(transactionArchive.findAllById(ids).collectList().block());
+            return Flux.fromIterable(ids);
+        });
+
+        archiver().archive();
+
+        assertThat(readWhileDeleting).containsExactlyInAnyOrderElementsOf(transactions);
+        assertThat(transactionArchive.count()).isEqualTo(3);
+    }
+
+    private TransactionArchiver archiver() {
+        return new TransactionArchiver(transactionStore, transactionArchive, transactionCounter, mock(TransactionCache.class), properties);
+    }
+}
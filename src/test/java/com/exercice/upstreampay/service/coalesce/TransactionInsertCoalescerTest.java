@@ -0,0 +1,119 @@
+package com.exercice.upstreampay.service.coalesce;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.management.TransactionMetrics;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.WrittenTransactions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.exercice.upstreampay.storage.TransactionFixtures.newTransactions;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class TransactionInsertCoalescerTest {
+
+    private static final int BATCH_SIZE = 4;
+
+    private final WrittenTransactions written = new WrittenTransactions();
+
+    private TransactionStore store;
+
+    private TransactionInsertCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(TransactionStore.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getCoalesce().setMaxBatchSize(BATCH_SIZE);
+        // only a full batch is flushed during a test
+        properties.getCoalesce().setMaxDelay(Duration.ofMinutes(1));
+        coalescer = new TransactionInsertCoalescer(store, new TransactionMetrics(new SimpleMeterRegistry()), properties);
+    }
+
+    @Test
+    void everyCallerGetsItsOwnTransaction() {
+        when(store.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Transaction>>getArgument(0)).map(written::write));
+
+        List<Transaction> transactions = newTransactions(BATCH_SIZE);
+        List<CompletableFuture<Transaction>> inserts = insertAll(transactions);
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertThat(inserts.get(i).join()).isSameAs(transactions.get(i));
+        }
+        assertThat(written.all()).hasSize(BATCH_SIZE);
+    }
+
+    @Test
+    void onlyTheTransactionWhichCannotBeInsertedFails() {
+        List<Transaction> transactions = newTransactions(BATCH_SIZE);
+        Transaction invalid = transactions.get(1);
+        // an ordered insert stops at the invalid transaction
+        when(store.insertAll(anyList())).thenAnswer(invocation -> Flux
+                .fromIterable(invocation.<List<Transaction>>getArgument(0))
+                .concatMap(transaction -> transaction == invalid
+                        ? Flux.error(new DuplicateKeyException("duplicate " + transaction.getId()))
+                        : Flux.just(written.write(transaction))));
+        when(store.findAllById(anyCollection())).thenAnswer(invocation -> written.readBack(invocation.getArgument(0)));
+
+        List<CompletableFuture<Transaction>> inserts = insertAll(transactions);
+
+        assertThat(inserts.get(0).join()).isSameAs(transactions.get(0));
+        assertThat(inserts.get(1)).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(DuplicateKeyException.class);
+        // the transactions after the invalid one are inserted again
+        assertThat(inserts.get(2).join()).isSameAs(transactions.get(2));
+        assertThat(inserts.get(3).join()).isSameAs(transactions.get(3));
+        assertThat(written.all()).hasSize(BATCH_SIZE - 1).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void everyCallerFailsWhenTheOutcomeIsUnknown() {
+        when(store.insertAll(anyList())).thenReturn(Flux.error(new DataAccessResourceFailureException("insert")));
+        when(store.findAllById(anyCollection())).thenReturn(Flux.error(new DataAccessResourceFailureException("read back")));
+
+        List<CompletableFuture<Transaction>> inserts = insertAll(newTransactions(BATCH_SIZE));
+
+        assertThat(inserts).allSatisfy(insert -> assertThat(insert).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(DataAccessResourceFailureException.class)
+                .havingCause()
+                .withMessage("read back"));
+    }
+
+    @Test
+    void aBatchIsFlushedAfterTheMaxDelay() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getCoalesce().setMaxBatchSize(BATCH_SIZE);
+        properties.getCoalesce().setMaxDelay(Duration.ofMillis(10));
+        coalescer = new TransactionInsertCoalescer(store, new TransactionMetrics(new SimpleMeterRegistry()), properties);
+        when(store.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Transaction>>getArgument(0)).map(written::write));
+
+        Transaction transaction = newTransactions(1).get(0);
+
+        StepVerifier.create(coalescer.insert(transaction))
+                .expectNext(transaction)
+                .verifyComplete();
+    }
+
+    private List<CompletableFuture<Transaction>> insertAll(List<Transaction> transactions) {
+        return transactions.stream().map(transaction -> coalescer.insert(transaction).toFuture()).collect(Collectors.toList());
+    }
+}
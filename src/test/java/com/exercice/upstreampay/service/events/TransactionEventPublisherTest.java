@@ -0,0 +1,79 @@
+package com.exercice.upstreampay.service.events;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.dto.TransactionEventDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TransactionEventPublisherTest {
+
+    private TransactionEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getEvents().setBufferSize(10_000);
+        publisher = new TransactionEventPublisher(mock(ReactiveMongoTemplate.class), properties);
+    }
+
+    @Test
+    void aWriteLeavingTheStatusUnchangedPublishesNothing() {
+        StepVerifier.create(publisher.subscribe(null, null, null))
+                .then(() -> {
+                    publisher.published(Status.AUTHORIZED, transaction("1", Status.AUTHORIZED));
+                    publisher.published(Status.AUTHORIZED, transaction("2", Status.CAPTURED));
+                })
+                .expectNextMatches(event -> event.getId().equals("2") && event.getPreviousStatus() == Status.AUTHORIZED)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void concurrentWritesAreAllPublished() throws InterruptedException {
+        int threads = 8;
+        int events = 1_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+
+        StepVerifier.create(publisher.subscribe(null, null, null).map(TransactionEventDTO::getId))
+                .then(() -> {
+                    for (int thread = 0; thread < threads; thread++) {
+                        writers.execute(() -> {
+                            try {
+                                start.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            for (int i = 0; i < events; i++) {
+                                publisher.published(null, transaction(String.valueOf(i), Status.NEW));
+                            }
+                        });
+                    }
+                    start.countDown();
+                })
+                .expectNextCount((long) threads * events)
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+
+        writers.shutdown();
+        assertThat(writers.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static Transaction transaction(String id, Status status) {
+        return Transaction.builder().id(id).status(status).build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.exercice.upstreampay.service.idempotency;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.controller.error.BadRequestAlertException;
+import com.exercice.upstreampay.entities.IdempotencyRecord;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.repository.IdempotencyRecordRepository;
+import com.exercice.upstreampay.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private static final String KEY = "key";
+
+    private TransactionService transactionService;
+
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        transactionService = mock(TransactionService.class);
+        idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(idempotencyRecordRepository.deleteById(KEY)).thenReturn(Mono.empty());
+        idempotencyService = new IdempotencyService(
+                transactionService,
+                idempotencyRecordRepository,
+                mock(ReactiveMongoTemplate.class),
+                new ApplicationProperties()
+        );
+    }
+
+    @Test
+    void aRejectedCreationReleasesTheKey() {
+        when(transactionService.save(any())).thenReturn(Mono.error(new BadRequestAlertException("rejected", "Transaction", "rejected")));
+
+        StepVerifier.create(idempotencyService.save(KEY, transaction()))
+                .expectError(BadRequestAlertException.class)
+                .verify();
+        verify(idempotencyRecordRepository).deleteById(KEY);
+    }
+
+    @Test
+    void aCreationWhichMayHaveBeenWrittenKeepsTheKeyPending() {
+        when(transactionService.save(any())).thenReturn(Mono.error(new DataAccessResourceFailureException("timed out")));
+
+        StepVerifier.create(idempotencyService.save(KEY, transaction()))
+                .expectError(DataAccessResourceFailureException.class)
+                .verify();
+        verify(idempotencyRecordRepository, never()).deleteById(KEY);
+    }
+
+    @Test
+    void aCreatedTransactionWhoseKeyCannotBeCompletedKeepsTheKeyPending() {
+        Transaction saved = transaction();
+        saved.setId("1");
+        when(transactionService.save(any())).thenReturn(Mono.just(saved));
+        when(idempotencyRecordRepository.save(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DataAccessResourceFailureException("timed out")));
+
+        StepVerifier.create(idempotencyService.save(KEY, transaction()))
+                .expectError(DataAccessResourceFailureException.class)
+                .verify();
+        verify(idempotencyRecordRepository, never()).deleteById(KEY);
+    }
+
+    @Test
+    void aDuplicateKeyOfTheCreationIsNotAReplay() {
+        when(transactionService.save(any())).thenReturn(Mono.error(new DuplicateKeyException("duplicate transaction")));
+
+        StepVerifier.create(idempotencyService.save(KEY, transaction()))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+        verify(idempotencyRecordRepository, never()).findById(KEY);
+    }
+
+    private static Transaction transaction() {
+        Transaction transaction = new Transaction();
+        transaction.setPrice(10);
+        transaction.setType(PaymentType.BANK_CARD);
+        transaction.setStatus(Status.NEW);
+        transaction.setOrders(List.of());
+        return transaction;
+    }
+}
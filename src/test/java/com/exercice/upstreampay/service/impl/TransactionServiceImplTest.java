@@ -0,0 +1,138 @@
+package com.exercice.upstreampay.service.impl;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.management.TransactionMetrics;
+import com.exercice.upstreampay.service.cache.TransactionCache;
+import com.exercice.upstreampay.service.coalesce.TransactionInsertCoalescer;
+import com.exercice.upstreampay.service.count.TransactionCounter;
+import com.exercice.upstreampay.service.events.TransactionEventPublisher;
+import com.exercice.upstreampay.service.limit.ConcurrencyLimitExceededException;
+import com.exercice.upstreampay.service.limit.ConcurrencyLimiter;
+import com.exercice.upstreampay.service.limit.TransactionLimiters;
+import com.exercice.upstreampay.service.stats.TransactionStatsService;
+import com.exercice.upstreampay.storage.TransactionStore;
+import com.exercice.upstreampay.storage.TransitionOutcome;
+import com.exercice.upstreampay.storage.archive.TransactionArchive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionServiceImplTest {
+
+    private TransactionStore transactionStore;
+
+    private TransactionLimiters transactionLimiters;
+
+    private TransactionCache transactionCache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TransactionServiceImpl transactionService;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getBatch().setChunkSize(1);
+        properties.getBatch().setConcurrency(1);
+        properties.getLimit().setEnabled(true);
+        properties.getLimit().setRetryAfter(Duration.ofMillis(50));
+        properties.getLimit().getWrite().setInitialLimit(1);
+        properties.getLimit().getWrite().setMinLimit(1);
+        properties.getLimit().getWrite().setMaxLimit(1);
+        transactionStore = mock(TransactionStore.class);
+        transactionLimiters = new TransactionLimiters(properties);
+        transactionCache = mock(TransactionCache.class);
+        TransactionStatsService transactionStatsService = mock(TransactionStatsService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        transactionService = new TransactionServiceImpl(
+                transactionStore,
+                properties,
+                transactionCache,
+                mock(TransactionCounter.class),
+                new TransactionMetrics(meterRegistry),
+                transactionStatsService,
+                mock(TransactionEventPublisher.class),
+                mock(TransactionInsertCoalescer.class),
+                transactionLimiters,
+                mock(TransactionArchive.class)
+        );
+    }
+
+    @Test
+    void onlyTheUpdatesChangingTheStatusAreCountedAsTransitions() {
+        Transaction previous = Transaction.builder().id("1").status(Status.AUTHORIZED).orders(List.of()).version(0L).build();
+        when(transactionStore.updateIfTransitionAllowed(any(), any())).thenAnswer(invocation -> {
+            Transaction given = invocation.getArgument(0);
+            return Mono.just(Tuples.of(previous, previous.toBuilder().status(given.getStatus()).version(1L).build()));
+        });
+
+        transactionService.update(previous.toBuilder().build()).block();
+        transactionService.update(previous.toBuilder().status(Status.CAPTURED).build()).block();
+
+        assertThat(meterRegistry.find("transaction.status.transitions").tag("status", "AUTHORIZED").counter()).isNull();
+        assertThat(meterRegistry.find("transaction.status.transitions").tag("status", "CAPTURED").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aBulkTransitionOverTheWriteLimitFailsWithTheRejection() {
+        ConcurrencyLimiter writes = transactionLimiters.get(TransactionLimiters.Kind.WRITE);
+        writes.tryAcquire();
+        // never written: the store is only subscribed to within a write slot
+        when(transactionStore.transitionAll(anyList(), any(), any())).thenReturn(Flux.error(new AssertionError("written")));
+
+        StepVerifier.create(transactionService.transitionAll(Flux.just("1", "2"), Status.CAPTURED))
+                .expectError(ConcurrencyLimitExceededException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void aBulkTransitionWaitsForAWriteSlot() {
+        ConcurrencyLimiter writes = transactionLimiters.get(TransactionLimiters.Kind.WRITE);
+        writes.tryAcquire();
+        Transaction previous = Transaction.builder().id("1").status(Status.AUTHORIZED).version(0L).build();
+        Transaction updated = previous.toBuilder().status(Status.CAPTURED).version(1L).build();
+        when(transactionStore.transitionAll(eq(List.of("1")), eq(Status.CAPTURED), any()))
+                .thenReturn(Flux.just(TransitionOutcome.updated(previous, updated)));
+
+        Schedulers.parallel().schedule(writes::onIgnored, 30, TimeUnit.MILLISECONDS);
+
+        StepVerifier.create(transactionService.transitionAll(Flux.just("1"), Status.CAPTURED))
+                .expectNextMatches(outcome -> outcome.getResult() == TransitionOutcome.Result.UPDATED)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void aBulkTransitionRejectedOnceItRespondedReportsTheRejectedTransactions() {
+        ConcurrencyLimiter writes = transactionLimiters.get(TransactionLimiters.Kind.WRITE);
+        when(transactionStore.transitionAll(eq(List.of("1")), eq(Status.CAPTURED), any())).thenReturn(Flux.error(new IllegalStateException("failed")));
+        when(transactionStore.transitionAll(eq(List.of("2")), eq(Status.CAPTURED), any())).thenReturn(Flux.error(new AssertionError("written")));
+        // the write slot given back by the failed first chunk is taken before the second chunk
+        doAnswer(invocation -> writes.tryAcquire()).when(transactionCache).invalidate("1");
+
+        StepVerifier.create(transactionService.transitionAll(Flux.just("1", "2"), Status.CAPTURED))
+                .expectNextMatches(outcome -> outcome.getId().equals("1") && outcome.getResult() == TransitionOutcome.Result.FAILED)
+                .expectNextMatches(outcome -> outcome.getId().equals("2") && outcome.getResult() == TransitionOutcome.Result.REJECTED)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,46 @@
+package com.exercice.upstreampay.service.limit;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.retry.Retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionLimitersTest {
+
+    private TransactionLimiters transactionLimiters;
+
+    private ConcurrencyLimiter writes;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getLimit().setEnabled(true);
+        transactionLimiters = new TransactionLimiters(properties);
+        writes = transactionLimiters.get(TransactionLimiters.Kind.WRITE);
+    }
+
+    @Test
+    void aFailedCallCancelledOnItsErrorGivesItsSlotBackOnce() {
+        // the retry cancels the failed call while its error is propagated
+        Flux<Object> call = transactionLimiters
+                .limit(TransactionLimiters.Kind.WRITE, Flux.error(new IllegalStateException("failed")))
+                .retryWhen(Retry.max(1).filter(ConcurrencyLimitExceededException.class::isInstance));
+
+        StepVerifier.create(call).expectError(IllegalStateException.class).verify();
+
+        assertThat(writes.getInFlight()).isZero();
+    }
+
+    @Test
+    void aCompletedOrCancelledCallGivesItsSlotBack() {
+        StepVerifier.create(transactionLimiters.limit(TransactionLimiters.Kind.WRITE, Mono.just(1))).expectNext(1).verifyComplete();
+        StepVerifier.create(transactionLimiters.limit(TransactionLimiters.Kind.WRITE, Flux.never())).thenCancel().verify();
+
+        assertThat(writes.getInFlight()).isZero();
+    }
+}
@@ -0,0 +1,87 @@
+package com.exercice.upstreampay.service.stats;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionStatsServiceTest {
+
+    private static final Instant CREATED_AT = Instant.parse("2024-01-01T10:15:00Z");
+
+    private MongoCollection<Document> collection;
+
+    private TransactionStatsService transactionStatsService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        collection = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection("transaction_stats")).thenReturn(Mono.just(collection));
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        transactionStatsService = new TransactionStatsService(mongoTemplate, null, new ApplicationProperties());
+    }
+
+    @Test
+    void theRecordsAreWrittenTogetherByTheNextFlush() {
+        Transaction first = transaction(Status.NEW, 10);
+        Transaction second = transaction(Status.NEW, 5);
+        Transaction authorized = transaction(Status.AUTHORIZED, 10);
+
+        transactionStatsService.recordCreated(List.of(first));
+        transactionStatsService.recordCreated(List.of(second));
+        transactionStatsService.recordUpdated(first, authorized);
+        transactionStatsService.recordUpdated(List.of(Tuples.of(second, transaction(Status.AUTHORIZED, 5))));
+        verify(collection, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+
+        transactionStatsService.flush();
+        transactionStatsService.flush();
+
+        ArgumentCaptor<List<WriteModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        verify(collection, times(1)).bulkWrite(writes.capture(), any(BulkWriteOptions.class));
+        // the NEW rollup nets to nothing and is not written
+        assertThat(writes.getValue()).hasSize(1);
+        UpdateOneModel<Document> write = (UpdateOneModel<Document>) writes.getValue().get(0);
+        assertThat(((Document) write.getFilter()).get("_id", Document.class).getString("status")).isEqualTo("AUTHORIZED");
+        Document increments = ((Document) write.getUpdate()).get("$inc", Document.class);
+        assertThat(increments.getLong("count")).isEqualTo(2L);
+        assertThat(increments.getDouble("totalPrice")).isEqualTo(15d);
+        assertThat(increments.getLong("sinceRebuild.count")).isEqualTo(2L);
+        assertThat(increments.getDouble("sinceRebuild.totalPrice")).isEqualTo(15d);
+    }
+
+    private static Transaction transaction(Status status, double price) {
+        Transaction transaction = new Transaction();
+        transaction.setId("1");
+        transaction.setPrice(price);
+        transaction.setType(PaymentType.PAYPAL);
+        transaction.setStatus(status);
+        transaction.setCreatedAt(CREATED_AT);
+        return transaction;
+    }
+}
@@ -0,0 +1,127 @@
+package com.exercice.upstreampay.service.util;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderLinesTest {
+
+    private static final OrderLine SHOES = new OrderLine("shoes", 1, 50);
+    private static final OrderLine SOCKS = new OrderLine("socks", 2, 5.5);
+    private static final OrderLine HAT = new OrderLine("hat", 1, 20);
+
+    @Test
+    void theFingerprintDoesNotDependOnTheOrderOfTheLines() {
+        assertThat(OrderLines.fingerprint(List.of(SHOES, SOCKS, HAT)))
+                .isEqualTo(OrderLines.fingerprint(List.of(HAT, SHOES, SOCKS)))
+                .isEqualTo(OrderLines.fingerprint(List.of(new OrderLine("socks", 2, 5.5), HAT, new OrderLine("shoes", 1, 50))));
+    }
+
+    @Test
+    void theFingerprintDependsOnTheMultiplicityAndContentOfTheLines() {
+        String fingerprint = OrderLines.fingerprint(List.of(SHOES, SOCKS));
+
+        assertThat(OrderLines.fingerprint(List.of(SHOES, SOCKS, SOCKS))).isNotEqualTo(fingerprint);
+        assertThat(OrderLines.fingerprint(List.of(SHOES, SHOES, SOCKS))).isNotEqualTo(OrderLines.fingerprint(List.of(SHOES, SOCKS, SOCKS)));
+        assertThat(OrderLines.fingerprint(List.of(SHOES, new OrderLine("socks", 3, 5.5)))).isNotEqualTo(fingerprint);
+        assertThat(OrderLines.fingerprint(List.of(SHOES, new OrderLine("socks", 2, 5.25)))).isNotEqualTo(fingerprint);
+        assertThat(OrderLines.fingerprint(List.of(SHOES, new OrderLine("sock", 2, 5.5)))).isNotEqualTo(fingerprint);
+        assertThat(OrderLines.fingerprint(List.of(new OrderLine(null, 1, 50)))).isNotEqualTo(OrderLines.fingerprint(List.of(new OrderLine("", 1, 50))));
+    }
+
+    @Test
+    void noLinesHaveTheZeroFingerprint() {
+        assertThat(OrderLines.fingerprint(null))
+                .isEqualTo(OrderLines.fingerprint(List.of()))
+                .isEqualTo("0".repeat(64));
+    }
+
+    @Test
+    void theFingerprintIsTheSumOfTheLineDigestsModulo2To256() throws Exception {
+        Random random = new Random(42);
+        List<OrderLine> lines = randomLines(random, 200);
+        BigInteger sum = BigInteger.ZERO;
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (OrderLine line : lines) {
+            sum = sum.add(new BigInteger(1, digest.digest(canonicalBytes(line))));
+        }
+        String expected = sum.mod(BigInteger.ONE.shiftLeft(256)).toString(16);
+
+        assertThat(OrderLines.fingerprint(lines)).isEqualTo("0".repeat(64 - expected.length()) + expected);
+    }
+
+    @Test
+    void sameFingerprintsAreSameLines() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            List<OrderLine> first = randomLines(random, 1 + random.nextInt(8));
+            List<OrderLine> second = new ArrayList<>(first);
+            switch (random.nextInt(4)) {
+                case 0:
+                    Collections.shuffle(second, random);
+                    break;
+                case 1:
+                    second.set(random.nextInt(second.size()), randomLine(random));
+                    break;
+                case 2:
+                    second.add(second.get(random.nextInt(second.size())));
+                    Collections.shuffle(second, random);
+                    break;
+                default:
+                    second.remove(random.nextInt(second.size()));
+                    break;
+            }
+
+            assertThat(OrderLines.fingerprint(first).equals(OrderLines.fingerprint(second)))
+                    .as("fingerprints of %s and %s", first, second)
+                    .isEqualTo(OrderLines.sameLines(first, second));
+        }
+    }
+
+    @Test
+    void sameLinesComparesMultisets() {
+        assertThat(OrderLines.sameLines(List.of(SHOES, SOCKS, SOCKS), List.of(SOCKS, SHOES, SOCKS))).isTrue();
+        assertThat(OrderLines.sameLines(List.of(SHOES, SOCKS, SOCKS), List.of(SOCKS, SHOES, SHOES))).isFalse();
+        assertThat(OrderLines.sameLines(List.of(SHOES), List.of(SHOES, SHOES))).isFalse();
+        assertThat(OrderLines.sameLines(null, null)).isTrue();
+        assertThat(OrderLines.sameLines(null, List.of())).isFalse();
+    }
+
+    private static List<OrderLine> randomLines(Random random, int count) {
+        List<OrderLine> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(randomLine(random));
+        }
+        return lines;
+    }
+
+    private static OrderLine randomLine(Random random) {
+        // few distinct values, so that equal lines are frequent
+        return new OrderLine("product " + random.nextInt(4), 1 + random.nextInt(3), random.nextInt(3) * 2.5);
+    }
+
+    /**
+     * The documented encoding of a line: presence of the name, UTF-8 length and bytes, quantity, price bits.
+     */
+    private static byte[] canonicalBytes(OrderLine line) {
+        byte[] name = line.getProductName() == null ? new byte[0] : line.getProductName().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer
+                .allocate(1 + Integer.BYTES + name.length + Integer.BYTES + Long.BYTES)
+                .put((byte) (line.getProductName() == null ? 0 : 1))
+                .putInt(name.length)
+                .put(name)
+                .putInt(line.getQuantity())
+                .putLong(Double.doubleToLongBits(line.getPrice()))
+                .array();
+    }
+}
@@ -0,0 +1,57 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Transactions shared by the tests of the stores, of the archive and of their services.
+ */
+public final class TransactionFixtures {
+
+    private static final Instant ARCHIVED_AT = Instant.parse("2022-01-01T00:00:00Z");
+
+    private TransactionFixtures() {
+    }
+
+    /**
+     * Transactions to be inserted: NEW, without id, with one order line each.
+     */
+    public static List<Transaction> newTransactions(int count) {
+        return IntStream
+                .range(0, count)
+                .mapToObj(i -> Transaction.builder()
+                        .price(10 + i)
+                        .type(PaymentType.BANK_CARD)
+                        .status(Status.NEW)
+                        .orders(List.of(new OrderLine("product " + i, 1, 10 + i)))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stored transactions old enough to be archived: CAPTURED, with an id, audit dates and a version.
+     */
+    public static List<Transaction> capturedTransactions(int count) {
+        return IntStream
+                .range(0, count)
+                .mapToObj(i -> Transaction.builder()
+                        .id(new ObjectId().toHexString())
+                        .price(10 + i)
+                        .type(PaymentType.PAYPAL)
+                        .status(Status.CAPTURED)
+                        .orders(List.of(new OrderLine("product " + i, 1, 10 + i)))
+                        .createdAt(ARCHIVED_AT)
+                        .updatedAt(ARCHIVED_AT)
+                        .version(2L)
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
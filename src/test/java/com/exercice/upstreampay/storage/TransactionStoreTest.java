@@ -0,0 +1,84 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.exercice.upstreampay.storage.TransactionFixtures.newTransactions;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class TransactionStoreTest {
+
+    private final WrittenTransactions written = new WrittenTransactions();
+
+    private TransactionStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(TransactionStore.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+    }
+
+    @Test
+    void insertEachFailsOnlyTheTransactionsWhichCannotBeInserted() {
+        List<Transaction> transactions = newTransactions(5);
+        Transaction invalid = transactions.get(2);
+        // an ordered insert: the transactions before the invalid one are written, the following ones are not attempted
+        when(store.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Transaction> batch = invocation.getArgument(0);
+            return Flux.fromIterable(batch).concatMap(transaction -> transaction == invalid
+                    ? Flux.error(new DuplicateKeyException("duplicate " + transaction.getId()))
+                    : Flux.just(written.write(transaction)));
+        });
+        when(store.findAllById(anyCollection())).thenAnswer(invocation -> written.readBack(invocation.getArgument(0)));
+
+        List<InsertOutcome> outcomes = store.insertEach(transactions).collectList().block();
+
+        assertThat(outcomes).hasSize(5);
+        assertThat(outcomes).extracting(InsertOutcome::isInserted).containsExactly(true, true, false, true, true);
+        assertThat(outcomes.get(2).getError()).isInstanceOf(DuplicateKeyException.class);
+        assertThat(outcomes.get(2).getTransaction()).isSameAs(invalid);
+        assertThat(outcomes).extracting(outcome -> outcome.getTransaction().getId())
+                .containsExactlyElementsOf(transactions.stream().map(Transaction::getId).collect(Collectors.toList()));
+        // every transaction is written once
+        assertThat(written.all()).hasSize(4).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void insertEachAssignsTheIdsBeforeInserting() {
+        List<Transaction> transactions = newTransactions(3);
+        when(store.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Transaction>>getArgument(0)));
+
+        StepVerifier.create(store.insertEach(transactions))
+                .expectNextCount(3)
+                .verifyComplete();
+        assertThat(transactions).allSatisfy(transaction -> assertThat(transaction.getId()).isNotNull());
+    }
+
+    @Test
+    void insertEachFailsWhenTheOutcomeIsUnknown() {
+        List<Transaction> transactions = newTransactions(3);
+        DataAccessResourceFailureException insertError = new DataAccessResourceFailureException("insert");
+        when(store.insertAll(anyList())).thenReturn(Flux.error(insertError));
+        when(store.findAllById(anyCollection())).thenReturn(Flux.error(new DataAccessResourceFailureException("read back")));
+
+        StepVerifier.create(store.insertEach(transactions))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).hasMessage("read back");
+                    assertThat(error.getSuppressed()).containsExactly(insertError);
+                })
+                .verify();
+    }
+}
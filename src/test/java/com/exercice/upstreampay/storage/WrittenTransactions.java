@@ -0,0 +1,29 @@
+package com.exercice.upstreampay.storage;
+
+import com.exercice.upstreampay.entities.Transaction;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The transactions written by a mocked store, to be read back by id.
+ */
+public final class WrittenTransactions {
+
+    private final List<Transaction> written = new ArrayList<>();
+
+    public synchronized Transaction write(Transaction transaction) {
+        written.add(transaction);
+        return transaction;
+    }
+
+    public synchronized Flux<Transaction> readBack(Collection<String> ids) {
+        return Flux.fromIterable(new ArrayList<>(written)).filter(transaction -> ids.contains(transaction.getId()));
+    }
+
+    public synchronized List<Transaction> all() {
+        return new ArrayList<>(written);
+    }
+}
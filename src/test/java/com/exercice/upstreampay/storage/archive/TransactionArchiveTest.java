@@ -0,0 +1,105 @@
+package com.exercice.upstreampay.storage.archive;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.entities.Transaction;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.exercice.upstreampay.storage.TransactionFixtures.capturedTransactions;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private TransactionArchive archive;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    @Test
+    void findAllByIdReadsTheTransactionsOfEverySegment() throws IOException {
+        archive = open();
+        List<Transaction> first = capturedTransactions(300);
+        List<Transaction> second = capturedTransactions(300);
+        archive.commit(archive.prepare(first), first);
+        archive.commit(archive.prepare(second), second);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i += 7) {
+            ids.add(first.get(i).getId());
+            ids.add(second.get(i).getId());
+        }
+        ids.add(new ObjectId().toHexString());
+        ids.add("0");
+        ids.add("zzz");
+
+        List<Transaction> found = archive.findAllById(ids).collectList().block();
+
+        assertThat(found).extracting(Transaction::getId).containsExactlyInAnyOrderElementsOf(ids.subList(0, ids.size() - 3));
+        for (Transaction transaction : found) {
+            assertThat(transaction).isEqualTo(archive.findById(transaction.getId()).block());
+        }
+    }
+
+    @Test
+    void aPendingSegmentIsReadButNotCountedUntilCommitted() throws IOException {
+        archive = open();
+        List<Transaction> transactions = capturedTransactions(10);
+        long segment = archive.prepare(transactions);
+        List<String> ids = transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+
+        assertThat(archive.findAllById(ids).collectList().block()).containsExactlyInAnyOrderElementsOf(transactions);
+        assertThat(archive.findById(ids.get(3)).block()).isEqualTo(transactions.get(3));
+        assertThat(archive.count()).isZero();
+        assertThat(archive.streamAll().collectList().block()).isEmpty();
+
+        archive.close();
+        archive = open();
+        assertThat(archive.pending()).containsExactly(segment);
+        assertThat(archive.readPending(segment)).containsExactlyInAnyOrderElementsOf(transactions);
+
+        archive.commit(segment, transactions.subList(0, 4));
+        assertThat(archive.pending()).isEmpty();
+        assertThat(archive.findAllById(ids).collectList().block()).containsExactlyInAnyOrderElementsOf(transactions.subList(0, 4));
+        assertThat(archive.count()).isEqualTo(4);
+        assertThat(archive.findById(ids.get(7)).block()).isNull();
+    }
+
+    @Test
+    void anIncompletePendingSegmentIsDeleted() throws IOException {
+        archive = open();
+        Path written = directory.resolve(String.format("%020d.arc.pending", archive.prepare(capturedTransactions(10))));
+        archive.close();
+        Files.write(written, Arrays.copyOf(Files.readAllBytes(written), 100));
+
+        archive = open();
+
+        assertThat(archive.pending()).isEmpty();
+        assertThat(written).doesNotExist();
+    }
+
+    private TransactionArchive open() throws IOException {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getArchive().setDirectory(directory.toString());
+        // several blocks per segment
+        properties.getArchive().setBlockSize(DataSize.ofKilobytes(2));
+        return new TransactionArchive(properties);
+    }
+}
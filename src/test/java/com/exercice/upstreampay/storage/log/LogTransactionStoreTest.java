@@ -0,0 +1,217 @@
+package com.exercice.upstreampay.storage.log;
+
+import com.exercice.upstreampay.config.ApplicationProperties;
+import com.exercice.upstreampay.controller.error.BadRequestAlertException;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import com.exercice.upstreampay.service.criteria.TransactionFields;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.unit.DataSize;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.exercice.upstreampay.storage.TransactionFixtures.newTransactions;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogTransactionStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private LogTransactionStore store;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void recoversTheRecordsBeforeATornTail() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+        List<Transaction> saved = store.insertAll(newTransactions(3)).collectList().block();
+        store.close();
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        // a crash in the middle of an append leaves a partial record
+        ByteBuffer record = Segment.frame(TransactionCodec.encode(newTransactions(1).get(0).toBuilder().id("torn").build()));
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.APPEND)) {
+            channel.write(record.limit(record.limit() / 2));
+        }
+
+        store = open(DataSize.ofMegabytes(1));
+
+        assertThat(Files.size(segment)).isEqualTo(size);
+        assertThat(store.count().block()).isEqualTo(3);
+        for (Transaction transaction : saved) {
+            assertThat(store.findById(transaction.getId()).block()).isEqualTo(transaction);
+        }
+        assertThat(store.findById("torn").block()).isNull();
+        // the next append follows the last valid record
+        Transaction next = store.save(newTransactions(1).get(0)).block();
+        store.close();
+        store = open(DataSize.ofMegabytes(1));
+        assertThat(store.count().block()).isEqualTo(4);
+        assertThat(store.findById(next.getId()).block()).isEqualTo(next);
+    }
+
+    @Test
+    void recoversTheRecordsBeforeACorruptOne() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+        List<Transaction> saved = store.insertAll(newTransactions(2)).collectList().block();
+        store.close();
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        ByteBuffer record = Segment.frame(TransactionCodec.encode(newTransactions(1).get(0).toBuilder().id("corrupt").build()));
+        record.put(record.limit() - 1, (byte) (record.get(record.limit() - 1) + 1));
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+
+        store = open(DataSize.ofMegabytes(1));
+
+        assertThat(Files.size(segment)).isEqualTo(size);
+        assertThat(store.findAllById(saved.stream().map(Transaction::getId).collect(Collectors.toList())).collectList().block())
+                .containsExactlyElementsOf(saved);
+        assertThat(store.findById("corrupt").block()).isNull();
+    }
+
+    @Test
+    void compactionKeepsTheTransactionsReadableWhileReadsRun() throws Exception {
+        store = open(DataSize.ofKilobytes(2));
+        List<String> ids = store.insertAll(newTransactions(200)).map(Transaction::getId).collectList().block();
+        // every other transaction is updated twice, so that the first segments hold live records to be moved
+        List<String> updated = IntStream.range(0, ids.size()).filter(i -> i % 2 == 0).mapToObj(ids::get).collect(Collectors.toList());
+        store.transitionAll(updated, Status.AUTHORIZED, Set.of(Status.NEW)).blockLast();
+        store.transitionAll(updated, Status.CAPTURED, Set.of(Status.AUTHORIZED)).blockLast();
+        List<String> deleted = updated.subList(0, 25);
+        store.deleteAllUnchanged(store.findAllById(deleted).collectList().block()).blockLast();
+        List<String> live = ids.stream().filter(id -> !deleted.contains(id)).collect(Collectors.toList());
+        Map<String, Status> statuses = live.stream().collect(Collectors.toMap(Function.identity(), id -> updated.contains(id) ? Status.CAPTURED : Status.NEW));
+        int segmentsBefore = segments().size();
+
+        AtomicBoolean compacted = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> reads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            reads.add(readers.submit(() -> {
+                int rounds = 0;
+                do {
+                    List<String> shuffled = new ArrayList<>(live);
+                    Collections.shuffle(shuffled);
+                    for (String id : shuffled) {
+                        Transaction transaction = store.findById(id).block();
+                        assertThat(transaction).isNotNull();
+                        assertThat(transaction.getStatus()).isEqualTo(statuses.get(id));
+                    }
+                    rounds++;
+                } while (!compacted.get());
+                return rounds;
+            }));
+        }
+        store.compact();
+        compacted.set(true);
+        for (Future<Integer> read : reads) {
+            assertThat(read.get(30, TimeUnit.SECONDS)).isPositive();
+        }
+        readers.shutdown();
+
+        assertThat(segments().size()).isLessThan(segmentsBefore);
+        assertThat(store.count().block()).isEqualTo(175);
+        assertThat(store.findAllById(deleted).collectList().block()).isEmpty();
+
+        // the moved records and the tombstones still hiding older records survive a restart
+        store.close();
+        store = open(DataSize.ofKilobytes(2));
+        assertThat(store.count().block()).isEqualTo(175);
+        assertThat(store.findAllById(deleted).collectList().block()).isEmpty();
+        assertThat(store.findAllById(live).collectMap(Transaction::getId, Transaction::getStatus).block())
+                .isEqualTo(statuses);
+    }
+
+    @Test
+    void tombstonesAreDroppedOnceNoSegmentHoldsTheirTransactions() throws IOException {
+        store = open(DataSize.ofKilobytes(2));
+        List<Transaction> saved = store.insertAll(newTransactions(200)).collectList().block();
+        store.deleteAllUnchanged(saved).blockLast();
+        int segmentsBefore = segments().size();
+
+        // the segments of the records go first, then the ones of the tombstones, which no longer hide anything
+        store.compact();
+
+        assertThat(segmentsBefore).isGreaterThan(2);
+        assertThat(segments()).hasSize(1);
+        store.close();
+        store = open(DataSize.ofKilobytes(2));
+        assertThat(store.count().block()).isZero();
+        assertThat(store.findAllById(saved.stream().map(Transaction::getId).collect(Collectors.toList())).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void pagesAreSortedByStatusThenIdFromTheIndexes() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+        List<String> ids = store.insertAll(newTransactions(6)).map(Transaction::getId).collectList().block();
+        store.transitionAll(ids.subList(0, 2), Status.AUTHORIZED, Set.of(Status.NEW)).blockLast();
+        store.transitionAll(ids.subList(4, 6), Status.AUTHORIZED, Set.of(Status.NEW)).blockLast();
+        store.transitionAll(ids.subList(4, 6), Status.CAPTURED, Set.of(Status.AUTHORIZED)).blockLast();
+
+        Sort sort = Sort.by(Sort.Order.desc("status"), Sort.Order.desc("id"));
+        List<String> page = store.findAll(PageRequest.of(1, 3, sort), TransactionFields.ALL)
+                .map(Transaction::getId)
+                .collectList()
+                .block();
+
+        // NEW, CAPTURED, AUTHORIZED descending by name, each by id descending
+        assertThat(page).containsExactly(ids.get(4), ids.get(1), ids.get(0));
+    }
+
+    @Test
+    void sortsWhichTheIndexesCannotServeAreRejected() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+
+        StepVerifier.create(store.findAll(PageRequest.of(0, 10, Sort.by("price")), TransactionFields.ALL))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(BadRequestAlertException.class)
+                        .hasMessageContaining("sorted"))
+                .verify();
+    }
+
+    private LogTransactionStore open(DataSize segmentSize) throws IOException {
+        ApplicationProperties properties = new ApplicationProperties();
+        ApplicationProperties.Storage.Log log = properties.getStorage().getLog();
+        log.setDirectory(directory.toString());
+        log.setSegmentSize(segmentSize);
+        log.setCompactionMinGarbage(0.3);
+        return new LogTransactionStore(properties);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        }
+    }
+}
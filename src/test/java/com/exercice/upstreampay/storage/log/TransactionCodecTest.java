@@ -0,0 +1,49 @@
+package com.exercice.upstreampay.storage.log;
+
+import com.exercice.upstreampay.entities.OrderLine;
+import com.exercice.upstreampay.entities.Transaction;
+import com.exercice.upstreampay.entities.enumerations.PaymentType;
+import com.exercice.upstreampay.entities.enumerations.Status;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionCodecTest {
+
+    @Test
+    void stringsLongerThan64KBAreEncoded() {
+        String productName = "é".repeat(100_000);
+        Transaction transaction = transaction(productName);
+
+        byte[] record = TransactionCodec.encode(transaction);
+
+        assertThat(TransactionCodec.decode(record)).isEqualTo(transaction);
+        assertThat(TransactionCodec.decodeId(record)).isEqualTo(transaction.getId());
+    }
+
+    @Test
+    void tombstonesAreEncoded() {
+        byte[] record = TransactionCodec.encodeTombstone("62f0d1c9a1b2c3d4e5f60718");
+
+        assertThat(TransactionCodec.isTombstone(record)).isTrue();
+        assertThat(TransactionCodec.decodeId(record)).isEqualTo("62f0d1c9a1b2c3d4e5f60718");
+        assertThat(TransactionCodec.isTombstone(TransactionCodec.encode(transaction("product")))).isFalse();
+    }
+
+    private static Transaction transaction(String productName) {
+        return Transaction.builder()
+                .id("62f0d1c9a1b2c3d4e5f60717")
+                .price(10)
+                .type(PaymentType.PAYPAL)
+                .status(Status.AUTHORIZED)
+                .orders(List.of(new OrderLine(productName, 2, 5)))
+                .ordersFingerprint("fingerprint")
+                .createdAt(Instant.parse("2022-08-08T10:15:30.123456789Z"))
+                .updatedAt(Instant.parse("2022-08-08T10:16:00Z"))
+                .version(3L)
+                .build();
+    }
+}